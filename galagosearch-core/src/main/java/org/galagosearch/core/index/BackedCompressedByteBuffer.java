@@ -51,6 +51,10 @@ public class BackedCompressedByteBuffer {
             flushBuffer(other);
         } else {
             buffer.add(other);
+
+            if (buffer.length() > threshold) {
+                flush();
+            }
         }
     }
 
@@ -88,7 +92,7 @@ public class BackedCompressedByteBuffer {
         FileOutputStream stream = new FileOutputStream(file);
         other.write(stream);
         stream.close();
-        diskLength += buffer.length();
+        diskLength += other.length();
         segments.add(file);
     }
 
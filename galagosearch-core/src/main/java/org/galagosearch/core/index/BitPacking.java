@@ -0,0 +1,97 @@
+// BSD License (http://www.galagosearch.org/license)
+package org.galagosearch.core.index;
+
+/**
+ * Frame-of-reference bit packing for small blocks of integers.  A packed
+ * block stores the smallest value in the block (vbyte coded), the number
+ * of bits needed for the largest difference from that value (one byte), and
+ * then every difference in exactly that many bits, least significant bit
+ * first.  The number of values isn't stored; the reader has to know it.
+ *
+ * @author trevor
+ */
+public class BitPacking {
+    /**
+     * Returns the number of bits needed to store value.
+     */
+    public static int bitsNeeded(int value) {
+        return 32 - Integer.numberOfLeadingZeros(value);
+    }
+
+    /**
+     * Returns the number of bytes needed to store count values of the given width.
+     */
+    public static int packedLength(int count, int bits) {
+        return (int) (((long) count * bits + 7) / 8);
+    }
+
+    /**
+     * Packs values[offset] through values[offset+count-1] and appends the
+     * result to output.  All values must be non-negative.
+     */
+    public static void pack(CompressedByteBuffer output, int[] values, int offset, int count) {
+        int minimum = Integer.MAX_VALUE;
+        int maximum = 0;
+
+        for (int i = offset; i < offset + count; i++) {
+            assert values[i] >= 0;
+            minimum = Math.min(minimum, values[i]);
+            maximum = Math.max(maximum, values[i]);
+        }
+        if (count == 0) {
+            minimum = 0;
+        }
+
+        int bits = bitsNeeded(maximum - minimum);
+        output.add(minimum);
+        output.addRaw(bits);
+
+        long buffer = 0;
+        int used = 0;
+        for (int i = offset; i < offset + count; i++) {
+            buffer |= ((long) (values[i] - minimum)) << used;
+            used += bits;
+
+            while (used >= 8) {
+                output.addRaw((int) (buffer & 0xff));
+                buffer >>>= 8;
+                used -= 8;
+            }
+        }
+
+        if (used > 0) {
+            output.addRaw((int) (buffer & 0xff));
+        }
+    }
+
+    /**
+     * Unpacks count values of the given width from data, starting at
+     * dataOffset, adds minimum to each, and stores them in output
+     * starting at outputOffset.
+     */
+    public static void unpack(byte[] data, int dataOffset, int bits, int minimum,
+                              int[] output, int outputOffset, int count) {
+        if (bits == 0) {
+            for (int i = 0; i < count; i++) {
+                output[outputOffset + i] = minimum;
+            }
+            return;
+        }
+
+        long mask = (1L << bits) - 1;
+        long buffer = 0;
+        int available = 0;
+        int position = dataOffset;
+
+        for (int i = 0; i < count; i++) {
+            while (available < bits) {
+                buffer |= (data[position++] & 0xffL) << available;
+                available += 8;
+            }
+
+            output[outputOffset + i] = (int) (buffer & mask) + minimum;
+            buffer >>>= bits;
+            available -= bits;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+// BSD License (http://www.galagosearch.org/license)
+package org.galagosearch.core.index;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <p>Compresses the value data of blocks written by IndexWriter when the
+ * isCompressed flag is set.  The codec is chosen with the <tt>blockCodec</tt>
+ * parameter and its name is stored in the manifest of the file, so IndexReader
+ * can find it again.  Files written before codecs were added have no name in
+ * the manifest, and are read with the gzip codec.</p>
+ *
+ * <p>The built-in codecs are <tt>gzip</tt> (the original format),
+ * <tt>deflate</tt> (the same compression without the gzip framing, and
+ * with reused native compressors) and <tt>fast</tt> (a pure Java LZ77 codec
+ * that compresses less but decompresses much faster).  Any other name is
+ * treated as the name of a BlockCodec class with a public no-argument
+ * constructor.</p>
+ *
+ * <p>A codec may be used by many threads at once.</p>
+ *
+ * @author trevor
+ */
+public abstract class BlockCodec {
+    /**
+     * Returns the name of this codec, which is stored in the manifest.
+     * getCodec(getName()) must return an equivalent codec.
+     */
+    public String getName() {
+        return getClass().getName();
+    }
+
+    /**
+     * Writes the compressed form of the first length bytes of data to output.
+     */
+    public abstract void compress(byte[] data, int length, OutputStream output) throws IOException;
+
+    /**
+     * Decompresses length bytes of input, starting at offset, into output.
+     * The output array is exactly as long as the uncompressed data.
+     */
+    public abstract void decompress(byte[] input, int offset, int length, byte[] output) throws IOException;
+
+    public static BlockCodec getCodec(String name) throws IOException {
+        if (name.equals("gzip")) {
+            return new GzipBlockCodec();
+        } else if (name.equals("deflate")) {
+            return new DeflateBlockCodec();
+        } else if (name.equals("fast")) {
+            return new FastBlockCodec();
+        }
+
+        try {
+            return (BlockCodec) Class.forName(name).newInstance();
+        } catch (Exception e) {
+            IOException ex = new IOException("Couldn't create the block codec '" + name + "'");
+            ex.initCause(e);
+            throw ex;
+        }
+    }
+}
@@ -79,11 +79,15 @@ public class CompressedByteBuffer {
      */
     public void add(CompressedByteBuffer other) {
         int totalLength = other.length() + length();
-        byte[] newValues = new byte[totalLength];
 
-        System.arraycopy(values, 0, newValues, 0, position);
-        System.arraycopy(other.values, 0, newValues, position, other.position);
-        values = newValues;
+        // grow geometrically, so that appending many small buffers is cheap
+        if (totalLength > values.length) {
+            byte[] newValues = new byte[Math.max(totalLength, values.length * 2)];
+            System.arraycopy(values, 0, newValues, 0, position);
+            values = newValues;
+        }
+
+        System.arraycopy(other.values, 0, values, position, other.position);
         position = totalLength;
     }
 
@@ -0,0 +1,108 @@
+// BSD License (http://www.galagosearch.org/license)
+package org.galagosearch.core.index;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * <p>Compresses blocks with raw deflate, which is gzip without the header
+ * and checksum.  Creating a Deflater or Inflater allocates native memory, so
+ * instead of making new ones for every block (as GZIPInputStream does) this
+ * codec keeps a small pool of them.</p>
+ *
+ * @author trevor
+ */
+public class DeflateBlockCodec extends BlockCodec {
+    static final int MAXIMUM_POOL_SIZE = 16;
+
+    ArrayList<Deflater> deflaters = new ArrayList<Deflater>();
+    ArrayList<Inflater> inflaters = new ArrayList<Inflater>();
+
+    @Override
+    public String getName() {
+        return "deflate";
+    }
+
+    public void compress(byte[] data, int length, OutputStream output) throws IOException {
+        Deflater deflater = getDeflater();
+        byte[] buffer = new byte[Math.max(64, Math.min(length, 65536))];
+
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+        while (!deflater.finished()) {
+            int count = deflater.deflate(buffer);
+            output.write(buffer, 0, count);
+        }
+        // with nowrap, Inflater may need one extra byte after the data
+        output.write(0);
+
+        release(deflater);
+    }
+
+    public void decompress(byte[] input, int offset, int length, byte[] output) throws IOException {
+        Inflater inflater = getInflater();
+
+        try {
+            inflater.setInput(input, offset, length);
+            int totalRead = 0;
+            while (totalRead < output.length) {
+                int bytesRead = inflater.inflate(output, totalRead, output.length - totalRead);
+                if (bytesRead == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new EOFException("Too little data was found.");
+                }
+                totalRead += bytesRead;
+            }
+        } catch (DataFormatException e) {
+            IOException ex = new IOException("Couldn't decompress a block");
+            ex.initCause(e);
+            throw ex;
+        } finally {
+            release(inflater);
+        }
+    }
+
+    private Deflater getDeflater() {
+        synchronized (deflaters) {
+            if (deflaters.size() > 0) {
+                return deflaters.remove(deflaters.size() - 1);
+            }
+        }
+        return new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    }
+
+    private Inflater getInflater() {
+        synchronized (inflaters) {
+            if (inflaters.size() > 0) {
+                return inflaters.remove(inflaters.size() - 1);
+            }
+        }
+        return new Inflater(true);
+    }
+
+    private void release(Deflater deflater) {
+        deflater.reset();
+        synchronized (deflaters) {
+            if (deflaters.size() < MAXIMUM_POOL_SIZE) {
+                deflaters.add(deflater);
+                return;
+            }
+        }
+        deflater.end();
+    }
+
+    private void release(Inflater inflater) {
+        inflater.reset();
+        synchronized (inflaters) {
+            if (inflaters.size() < MAXIMUM_POOL_SIZE) {
+                inflaters.add(inflater);
+                return;
+            }
+        }
+        inflater.end();
+    }
+}
@@ -17,6 +17,7 @@ public class DocumentLengthsReader {
     RandomAccessFile file;
     FileChannel channel;
     ByteBuffer buffer;
+    int minimumLength = -1;
     
     public DocumentLengthsReader(String filename) throws FileNotFoundException, IOException {
         file = new RandomAccessFile(new File(filename), "r");
@@ -32,4 +33,26 @@ public class DocumentLengthsReader {
     public int getLength(int document) {
         return buffer.getInt(document*4);
     }
+
+    /**
+     * Returns the length of the shortest non-empty document.  Empty documents
+     * are skipped because they can't appear in any inverted list.
+     */
+    public int getMinimumLength() {
+        if (minimumLength < 0) {
+            int minimum = Integer.MAX_VALUE;
+            int count = buffer.capacity() / 4;
+
+            for (int i = 0; i < count; i++) {
+                int length = buffer.getInt(i*4);
+                if (length > 0) {
+                    minimum = Math.min(length, minimum);
+                }
+            }
+
+            minimumLength = (minimum == Integer.MAX_VALUE) ? 0 : minimum;
+        }
+
+        return minimumLength;
+    }
 }
@@ -83,6 +83,10 @@ public class DocumentNameReader {
         return result;
     }
     
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
     public void read(DataInputStream input) throws IOException {
         int offset = 0;
         
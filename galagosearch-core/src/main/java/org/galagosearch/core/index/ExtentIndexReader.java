@@ -57,9 +57,9 @@ public class ExtentIndexReader implements StructuredIndexPartReader {
             builder.append(document);
             for (int i = 0; i < extents.getPosition(); ++i) {
                 builder.append(",(");
-                builder.append(extents.getBuffer()[i].begin);
+                builder.append(extents.begin(i));
                 builder.append(",");
-                builder.append(extents.getBuffer()[i].end);
+                builder.append(extents.end(i));
                 builder.append(")");
            }
            return builder.toString();
@@ -0,0 +1,175 @@
+// BSD License (http://www.galagosearch.org/license)
+package org.galagosearch.core.index;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <p>A simple LZ77 codec, written in Java, that trades compression ratio for
+ * decompression speed.  The format is a series of sequences, each of
+ * which is a run of literal bytes followed by a copy of earlier output:</p>
+ *
+ * <pre>
+ * token (1 byte): literal count in the high 4 bits, match length - 4 in the low 4 bits
+ * extra literal count bytes, if the literal count is 15
+ * literal bytes
+ * match offset (2 bytes, little endian)
+ * extra match length bytes, if the match length - 4 is 15
+ * </pre>
+ *
+ * <p>A count of 15 is extended by adding bytes until one of them isn't 255.
+ * The last sequence has literals but no match; it ends the block.  Matches are
+ * found with a hash table of 4-byte sequences, so compression is also fast.</p>
+ *
+ * @author trevor
+ */
+public class FastBlockCodec extends BlockCodec {
+    static final int MINIMUM_MATCH = 4;
+    static final int MAXIMUM_OFFSET = 65535;
+    static final int HASH_BITS = 14;
+
+    @Override
+    public String getName() {
+        return "fast";
+    }
+
+    private static int readInt(byte[] data, int i) {
+        return (data[i] & 0xFF) |
+               ((data[i + 1] & 0xFF) << 8) |
+               ((data[i + 2] & 0xFF) << 16) |
+               ((data[i + 3] & 0xFF) << 24);
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_BITS);
+    }
+
+    private static int writeCount(byte[] out, int o, int count) {
+        while (count >= 255) {
+            out[o++] = (byte) 255;
+            count -= 255;
+        }
+        out[o++] = (byte) count;
+        return o;
+    }
+
+    private static int writeLiterals(byte[] out, int o, byte[] data, int start, int count, int matchCode) {
+        out[o++] = (byte) ((Math.min(count, 15) << 4) | Math.min(matchCode, 15));
+        if (count >= 15) {
+            o = writeCount(out, o, count - 15);
+        }
+        System.arraycopy(data, start, out, o, count);
+        return o + count;
+    }
+
+    public void compress(byte[] data, int length, OutputStream output) throws IOException {
+        // positions are stored plus one, so 0 means empty
+        int[] table = new int[1 << HASH_BITS];
+        byte[] out = new byte[length + length / 64 + 32];
+        int o = 0;
+        int anchor = 0;
+        int i = 0;
+
+        while (i <= length - MINIMUM_MATCH) {
+            int sequence = readInt(data, i);
+            int slot = hash(sequence);
+            int candidate = table[slot] - 1;
+            table[slot] = i + 1;
+
+            if (candidate < 0 || i - candidate > MAXIMUM_OFFSET || readInt(data, candidate) != sequence) {
+                i++;
+                continue;
+            }
+
+            int matchLength = MINIMUM_MATCH;
+            while (i + matchLength < length && data[candidate + matchLength] == data[i + matchLength]) {
+                matchLength++;
+            }
+            // the match may also start before the bytes that were hashed
+            while (i > anchor && candidate > 0 && data[i - 1] == data[candidate - 1]) {
+                i--;
+                candidate--;
+                matchLength++;
+            }
+
+            int matchCode = matchLength - MINIMUM_MATCH;
+            int offset = i - candidate;
+            o = writeLiterals(out, o, data, anchor, i - anchor, matchCode);
+            out[o++] = (byte) offset;
+            out[o++] = (byte) (offset >>> 8);
+            if (matchCode >= 15) {
+                o = writeCount(out, o, matchCode - 15);
+            }
+
+            i += matchLength;
+            anchor = i;
+        }
+
+        o = writeLiterals(out, o, data, anchor, length - anchor, 0);
+        output.write(out, 0, o);
+    }
+
+    public void decompress(byte[] input, int offset, int length, byte[] output) throws IOException {
+        int in = offset;
+        int end = offset + length;
+        int o = 0;
+
+        try {
+            while (true) {
+                int token = input[in++] & 0xFF;
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int b;
+                    do {
+                        b = input[in++] & 0xFF;
+                        literals += b;
+                    } while (b == 255);
+                }
+
+                System.arraycopy(input, in, output, o, literals);
+                in += literals;
+                o += literals;
+
+                if (in >= end) {
+                    break;
+                }
+
+                int distance = (input[in] & 0xFF) | ((input[in + 1] & 0xFF) << 8);
+                in += 2;
+                int matchLength = token & 15;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = input[in++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MINIMUM_MATCH;
+
+                int from = o - distance;
+                if (distance == 0 || from < 0) {
+                    throw new IOException("Bad match offset in a compressed block.");
+                }
+
+                if (distance >= matchLength) {
+                    System.arraycopy(output, from, output, o, matchLength);
+                } else {
+                    // the match overlaps the bytes it's copying
+                    for (int j = 0; j < matchLength; j++) {
+                        output[o + j] = output[from + j];
+                    }
+                }
+                o += matchLength;
+            }
+        } catch (IndexOutOfBoundsException e) {
+            IOException ex = new IOException("A compressed block is corrupt.");
+            ex.initCause(e);
+            throw ex;
+        }
+
+        if (o != output.length) {
+            throw new EOFException("Too little data was found.");
+        }
+    }
+}
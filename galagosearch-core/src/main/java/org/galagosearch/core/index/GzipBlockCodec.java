@@ -0,0 +1,41 @@
+// BSD License (http://www.galagosearch.org/license)
+package org.galagosearch.core.index;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses blocks with gzip.  This is the format IndexWriter has always used
+ * for compressed files.
+ *
+ * @author trevor
+ */
+public class GzipBlockCodec extends BlockCodec {
+    @Override
+    public String getName() {
+        return "gzip";
+    }
+
+    public void compress(byte[] data, int length, OutputStream output) throws IOException {
+        GZIPOutputStream gzipStream = new GZIPOutputStream(output);
+        gzipStream.write(data, 0, length);
+        gzipStream.finish();
+    }
+
+    public void decompress(byte[] input, int offset, int length, byte[] output) throws IOException {
+        GZIPInputStream stream = new GZIPInputStream(new ByteArrayInputStream(input, offset, length));
+        int totalRead = 0;
+        while (totalRead < output.length) {
+            int remaining = output.length - totalRead;
+            int bytesRead = stream.read(output, totalRead, remaining);
+            if (bytesRead <= 0) {
+                throw new EOFException("Too little data was found.");
+            }
+            totalRead += bytesRead;
+        }
+    }
+}
@@ -1,18 +1,19 @@
 // BSD License (http://www.galagosearch.org/license)
 package org.galagosearch.core.index;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
-import java.io.EOFException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.util.zip.GZIPInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.galagosearch.core.index.IndexWriter;
-import org.galagosearch.core.index.VocabularyReader.TermSlot;
 import org.galagosearch.core.index.VocabularyReader;
+import org.galagosearch.core.util.BloomFilter;
 import org.galagosearch.tupleflow.BufferedFileDataStream;
+import org.galagosearch.tupleflow.ByteBufferDataStream;
 import org.galagosearch.tupleflow.DataStream;
 import org.galagosearch.tupleflow.MemoryDataStream;
 import org.galagosearch.tupleflow.Parameters;
@@ -37,18 +38,60 @@ import org.galagosearch.tupleflow.Utility;
  * 
  * <p>Typically this class is extended by composition instead of inheritance.</p>
  * 
+ * <p>Once opened, all reads of vocabulary blocks and values are positional
+ * reads on a shared FileChannel, so a single IndexReader can be used by many
+ * threads at once as long as each thread uses its own iterators.</p>
+ * 
+ * <p>An IndexReader can also be opened in mapped mode, where the whole file is
+ * memory-mapped and values are returned as slices of the mapping, so reads
+ * don't need a system call or a copy.  Java can't map more than 2GB at a time, so
+ * large files are mapped as a series of overlapping segments.  A value that
+ * doesn't fit in one segment (only possible for values larger than the overlap)
+ * is read from the file instead.</p>
+ * 
+ * <p>The vocabulary is read on the first key lookup, not when the file is
+ * opened, so opening many files that are seldom used is cheap.</p>
+ * 
+ * <p>Decoded vocabulary blocks are kept in a small LRU cache, so looking up
+ * a popular key doesn't decode its block again.  The cache size is set with
+ * the <tt>vocabularyCacheSize</tt> parameter (a number of blocks, 0 turns the
+ * cache off).</p>
+ * 
+ * <p>If the values are compressed, decompressed value blocks are cached too,
+ * so fetching several documents from the same block only decompresses it
+ * once.  That cache holds at most <tt>blockCacheBytes</tt> bytes of
+ * decompressed data (0 turns it off).</p>
+ * 
+ * <p>If the file was written with a Bloom filter over its keys, lookups of keys
+ * that aren't in the file usually return without reading the vocabulary.</p>
+ * 
  * @author trevor
  */
 public class IndexReader {
-    VocabularyReader vocabulary;
     RandomAccessFile input;
+    FileChannel channel;
     Parameters manifest;
     int blockSize = 65536;
     int vocabGroup = 16;
     long vocabularyOffset;
+    long bloomFilterOffset;
     long manifestOffset;
     long footerOffset;
     boolean isCompressed;
+    BlockCodec codec;
+    boolean hasBloomFilter;
+    // the vocabulary and Bloom filter are read on first use
+    volatile boolean vocabularyLoaded;
+    VocabularyReader vocabulary;
+    BloomFilter bloomFilter;
+    ByteBuffer[] segments;
+
+    VocabularyCache vocabularyCache;
+    BlockCache blockCache;
+
+    static final int segmentShift = 30;
+    static final long segmentSize = 1L << segmentShift;
+    static final long segmentOverlap = 1L << 26;
     
     private static class VocabularyBlock {
         long startFileOffset;
@@ -56,14 +99,17 @@ public class IndexReader {
         long endValueFileOffset;
 
         long[] endValueOffsets;
-        String[] keys;
+        // key i is stored in keyData[keyStarts[i]] to keyData[keyStarts[i+1]-1]
+        byte[] keyData;
+        int[] keyStarts;
 
         public VocabularyBlock(
                 long startFileOffset,
                 long startValueFileOffset,
                 long endValueFileOffset,
-                long[] endValueOffsets, String[] keys) {
-            this.keys = keys;
+                long[] endValueOffsets, byte[] keyData, int[] keyStarts) {
+            this.keyData = keyData;
+            this.keyStarts = keyStarts;
             this.endValueOffsets = endValueOffsets;
             this.startFileOffset = startFileOffset;
             this.startValueFileOffset = startValueFileOffset;
@@ -101,19 +147,146 @@ public class IndexReader {
             return endValueOffsets.length > (index + 1);
         }
 
-        public int findIndex(String term) {
-            // Need to do a linear search here because the vocabulary order
-            // does not necessarily match Java's idea of alphabetical order
-            for (int i = 0; i < keys.length; i++) {
-                if (keys[i].equals(term)) {
-                    return i;
+        public int keyCount() {
+            return endValueOffsets.length;
+        }
+
+        private int compareKey(int index, byte[] key) {
+            return Utility.compare(keyData, keyStarts[index], keyStarts[index + 1] - keyStarts[index],
+                                   key, 0, key.length);
+        }
+
+        /**
+         * Returns the index of the first key in this block that is greater
+         * than or equal to key, or keyCount() if there is no such key.
+         * Keys are written in byte order, so this is a binary search.
+         */
+        public int lowerBound(byte[] key) {
+            int small = 0;
+            int big = keyCount();
+
+            while (small < big) {
+                int middle = small + (big - small) / 2;
+
+                if (compareKey(middle, key) < 0) {
+                    small = middle + 1;
+                } else {
+                    big = middle;
                 }
             }
+
+            return small;
+        }
+
+        public int findIndex(byte[] key) {
+            int index = lowerBound(key);
+
+            if (index < keyCount() && compareKey(index, key) == 0) {
+                return index;
+            }
             return -1;
         }
 
         private String getKey(int termIndex) {
-            return this.keys[termIndex];
+            return Utility.makeString(keyData, keyStarts[termIndex],
+                                      keyStarts[termIndex + 1] - keyStarts[termIndex]);
+        }
+    }
+
+    /**
+     * An LRU cache of decoded vocabulary blocks, keyed by the file offset of
+     * the block.  VocabularyBlocks are never modified after they're decoded, so
+     * they can be shared by iterators in different threads.
+     */
+    private static class VocabularyCache {
+        LinkedHashMap<Long, VocabularyBlock> blocks;
+        long hits;
+        long misses;
+
+        public VocabularyCache(final int capacity) {
+            blocks = new LinkedHashMap<Long, VocabularyBlock>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, VocabularyBlock> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        public synchronized VocabularyBlock get(long offset) {
+            VocabularyBlock block = blocks.get(offset);
+            if (block == null) {
+                misses++;
+            } else {
+                hits++;
+            }
+            return block;
+        }
+
+        public synchronized void put(long offset, VocabularyBlock block) {
+            blocks.put(offset, block);
+        }
+
+        public synchronized long getHits() {
+            return hits;
+        }
+
+        public synchronized long getMisses() {
+            return misses;
+        }
+    }
+
+    /**
+     * An LRU cache of decompressed value blocks, keyed by the file offset of
+     * the block values.  The cache holds at most capacity bytes of data; blocks
+     * larger than that aren't cached.  The arrays are never modified once
+     * they're decompressed, so they can be shared by iterators in different threads.
+     */
+    private static class BlockCache {
+        LinkedHashMap<Long, byte[]> blocks;
+        long capacity;
+        long bytes;
+        long hits;
+        long misses;
+
+        public BlockCache(long capacity) {
+            this.capacity = capacity;
+            blocks = new LinkedHashMap<Long, byte[]>(16, 0.75f, true);
+        }
+
+        public synchronized byte[] get(long offset) {
+            byte[] block = blocks.get(offset);
+            if (block == null) {
+                misses++;
+            } else {
+                hits++;
+            }
+            return block;
+        }
+
+        public synchronized void put(long offset, byte[] block) {
+            if (block.length > capacity) {
+                return;
+            }
+
+            byte[] previous = blocks.put(offset, block);
+            if (previous != null) {
+                bytes -= previous.length;
+            }
+            bytes += block.length;
+
+            java.util.Iterator<byte[]> eldest = blocks.values().iterator();
+            while (bytes > capacity) {
+                bytes -= eldest.next().length;
+                eldest.remove();
+            }
+        }
+
+        public synchronized long getHits() {
+            return hits;
+        }
+
+        public synchronized long getMisses() {
+            return misses;
         }
     }
 
@@ -123,6 +296,8 @@ public class IndexReader {
         String key;
         int keyIndex;
         boolean done;
+        // iterators that scan the whole file don't use the block cache
+        boolean useBlockCache = true;
 
         Iterator(VocabularyBlock block, int index) throws IOException {
             this.block = block;
@@ -134,13 +309,14 @@ public class IndexReader {
         }
 
         void loadIndex() throws IOException {
-            key = "";
+            // the key string is only built if someone asks for it
+            key = null;
 
             if (block == null || keyIndex < 0) {
+                key = "";
                 done = true;
                 return;
             }
-            key = block.getKey(keyIndex);
         }
 
         void invalidateBlock() {
@@ -148,43 +324,31 @@ public class IndexReader {
         }
         
         void decompressBlock() throws IOException {
-            int blockLength = (int) (block.getValuesEnd() - block.getValuesStart());
-            byte[] data = new byte[blockLength];
-            input.seek(block.getValuesStart());
-            input.readFully(data);
-            
-            ByteArrayInputStream in = new ByteArrayInputStream(data);
-            DataInputStream dataIn = new DataInputStream(in);
-            int uncompressedLength = dataIn.readInt();
-            
-            GZIPInputStream stream = new GZIPInputStream(in);
-            decompressedData = new byte[uncompressedLength];
-            int totalRead = 0;
-            while (totalRead < uncompressedLength) {
-                int remaining = decompressedData.length - totalRead;
-                int bytesRead = stream.read(decompressedData, totalRead, remaining);
-                if (bytesRead <= 0) {
-                    throw new EOFException("Too little data was found.");
-                }
-                totalRead += bytesRead;
+            if (blockCache == null || !useBlockCache) {
+                decompressedData = readCompressedBlock(block);
+                return;
+            }
+
+            long offset = block.getValuesStart();
+            decompressedData = blockCache.get(offset);
+            if (decompressedData == null) {
+                decompressedData = readCompressedBlock(block);
+                blockCache.put(offset, decompressedData);
             }
         }
         
         public void skipTo(byte[] key) throws IOException {
-            TermSlot slot = vocabulary.get(key);
-            if (slot == null) {
+            loadVocabulary();
+            int slot = vocabulary.findSlot(key);
+            if (slot < 0) {
                 done = true;
             } else {
                 invalidateBlock();
-                block = readVocabularyBlock(slot.begin);
-                keyIndex = 0;
-                while (keyIndex < block.keys.length) {
-                    byte[] blockKey = Utility.makeBytes(block.keys[keyIndex]);
-                    if (Utility.compare(key, blockKey) <= 0) {
-                        loadIndex();
-                        return;
-                    }
-                    keyIndex++;
+                block = getVocabularyBlock(vocabulary.getBlockStart(slot));
+                keyIndex = block.lowerBound(key);
+                if (keyIndex < block.keyCount()) {
+                    loadIndex();
+                    return;
                 }
                 done = true;
             }
@@ -208,6 +372,9 @@ public class IndexReader {
          * Returns the key associated with the current inverted list.
          */
         public String getKey() {
+            if (key == null) {
+                key = block.getKey(keyIndex);
+            }
             return key;
         }
         
@@ -314,34 +481,109 @@ public class IndexReader {
      * @throws IOException
      */
     public IndexReader(String pathname) throws FileNotFoundException, IOException {
+        this(pathname, false);
+    }
+
+    /**
+     * Opens an index found at pathname.
+     * 
+     * @param pathname Filename of the index to open.
+     * @param mapped If true, the file is memory-mapped and values are read
+     *               directly from the mapping.
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
+    public IndexReader(String pathname, boolean mapped) throws FileNotFoundException, IOException {
+        this(pathname, mappedParameters(mapped));
+    }
+
+    private static Parameters mappedParameters(boolean mapped) {
+        Parameters parameters = new Parameters();
+        parameters.add("mmap", Boolean.toString(mapped));
+        return parameters;
+    }
+
+    /**
+     * Opens an index found at pathname.  If the <tt>mmap</tt> parameter is true,
+     * the file is memory-mapped.  The <tt>vocabularyCacheSize</tt> parameter sets
+     * how many decoded vocabulary blocks are cached (default 1024), and
+     * <tt>blockCacheBytes</tt> sets how many bytes of decompressed value blocks
+     * are cached (default 8MB).
+     * 
+     * @param pathname Filename of the index to open.
+     * @param parameters Options for reading the index.
+     * @throws FileNotFoundException
+     * @throws IOException
+     */
+    public IndexReader(String pathname, Parameters parameters) throws FileNotFoundException, IOException {
         input = new RandomAccessFile(pathname, "r");
+        channel = input.getChannel();
+        if (parameters.get("mmap", false)) {
+            mapSegments();
+        }
 
-        // Seek to the end of the file
+        int cacheSize = (int) parameters.get("vocabularyCacheSize", 1024);
+        if (cacheSize > 0) {
+            vocabularyCache = new VocabularyCache(cacheSize);
+        }
+
+        // The magic number at the end of the file says which footer it has
         long length = input.length();
-        footerOffset = length - 2*Integer.SIZE/8 - 3*Long.SIZE/8 - 1; 
+        input.seek(length - Long.SIZE/8);
+        long magicNumber = input.readLong();
+        hasBloomFilter = (magicNumber == IndexWriter.BLOOM_MAGIC_NUMBER);
+
+        if (magicNumber != IndexWriter.MAGIC_NUMBER && !hasBloomFilter) {
+            throw new IOException("This does not appear to be an index file (wrong magic number)");
+        }
+
+        footerOffset = length - 2*Integer.SIZE/8 - 3*Long.SIZE/8 - 1;
+        if (hasBloomFilter) {
+            footerOffset -= Long.SIZE/8;
+        }
         input.seek(footerOffset);
         
         // Now, read metadata values:
+        if (hasBloomFilter) {
+            bloomFilterOffset = input.readLong();
+        }
         vocabularyOffset = input.readLong();
         manifestOffset = input.readLong();
         blockSize = input.readInt();
         vocabGroup = input.readInt();
         isCompressed = input.readBoolean();
-        long magicNumber = input.readLong();
-        
-        if (magicNumber != IndexWriter.MAGIC_NUMBER) {
-            throw new IOException("This does not appear to be an index file (wrong magic number)");
+
+        long blockCacheBytes = parameters.get("blockCacheBytes", 8L << 20);
+        if (isCompressed && blockCacheBytes > 0) {
+            blockCache = new BlockCache(blockCacheBytes);
         }
-        long invertedListLength = vocabularyOffset;
-        long vocabularyLength = manifestOffset - vocabularyOffset;
-        
-        input.seek(vocabularyOffset);
-        vocabulary = new VocabularyReader(input, invertedListLength, vocabularyLength);
         
         input.seek(manifestOffset);
         byte[] xmlData = new byte[(int) (footerOffset - manifestOffset)];
         input.read(xmlData);
         manifest = new Parameters(xmlData);
+
+        if (isCompressed) {
+            // files written before there was a choice of codec use gzip
+            codec = BlockCodec.getCodec(manifest.get("blockCodec", "gzip"));
+        }
+    }
+
+    /**
+     * Maps the file into memory.  Segment i starts at byte i*segmentSize, but
+     * runs segmentOverlap bytes past the start of the next segment, so that
+     * any value shorter than the overlap fits entirely in one segment.
+     */
+    void mapSegments() throws IOException {
+        long length = channel.size();
+        int segmentCount = (int) Math.max(1, (length + segmentSize - 1) / segmentSize);
+        segments = new ByteBuffer[segmentCount];
+
+        for (int i = 0; i < segmentCount; i++) {
+            long start = i * segmentSize;
+            long end = Math.min(length, start + segmentSize + segmentOverlap);
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        }
     }
 
     /**
@@ -364,7 +606,8 @@ public class IndexReader {
         }
         f.close();
         
-        boolean result = (magicNumber == IndexWriter.MAGIC_NUMBER);
+        boolean result = (magicNumber == IndexWriter.MAGIC_NUMBER ||
+                          magicNumber == IndexWriter.BLOOM_MAGIC_NUMBER);
         return result;
     }
     
@@ -384,9 +627,43 @@ public class IndexReader {
      * Returns the vocabulary structure for this IndexReader.  Note that the vocabulary
      * contains only the first key in each block.
      */
-    public VocabularyReader getVocabulary() {
+    public VocabularyReader getVocabulary() throws IOException {
+        loadVocabulary();
         return vocabulary;
     }
+
+    /**
+     * Reads the vocabulary, and the Bloom filter if there is one.  This happens
+     * on the first key lookup, so opening a file only reads its footer
+     * and manifest; call this to pay the cost up front instead.
+     */
+    public void loadVocabulary() throws IOException {
+        if (vocabularyLoaded) {
+            return;
+        }
+
+        synchronized (this) {
+            if (vocabularyLoaded) {
+                return;
+            }
+
+            long invertedListLength = vocabularyOffset;
+            long vocabularyEnd = hasBloomFilter ? bloomFilterOffset : manifestOffset;
+            long vocabularyLength = vocabularyEnd - vocabularyOffset;
+
+            input.seek(vocabularyOffset);
+            vocabulary = new VocabularyReader(input, invertedListLength, vocabularyLength);
+
+            if (hasBloomFilter) {
+                byte[] filterData = new byte[(int) (manifestOffset - bloomFilterOffset)];
+                input.seek(bloomFilterOffset);
+                input.readFully(filterData);
+                bloomFilter = BloomFilter.read(filterData);
+            }
+
+            vocabularyLoaded = true;
+        }
+    }
     
     /**
      * Returns an iterator pointing to the very first key in the index.
@@ -397,6 +674,7 @@ public class IndexReader {
     public Iterator getIterator() throws IOException {
         VocabularyBlock block = readVocabularyBlock(0);
         Iterator result = new Iterator(block, 0);
+        result.useBlockCache = false;
         result.loadIndex();
         return result;
     }
@@ -406,13 +684,25 @@ public class IndexReader {
      * null if the key is not found in the index.
      */
     public Iterator getIterator(String key) throws IOException {
-        // read from offset to offset in the vocab structure (right?)
-        VocabularyReader.TermSlot slot = vocabulary.get(key);
+        return getIterator(Utility.makeBytes(key));
+    }
+
+    /**
+     * Returns an iterator pointing at a specific key.  Returns
+     * null if the key is not found in the index.
+     */
+    public Iterator getIterator(byte[] key) throws IOException {
+        loadVocabulary();
+        if (bloomFilter != null && !bloomFilter.mightContain(key)) {
+            return null;
+        }
+
+        int slot = vocabulary.findSlot(key);
 
-        if (slot == null) {
+        if (slot < 0) {
             return null;
         }
-        VocabularyBlock block = readVocabularyBlock(slot.begin);
+        VocabularyBlock block = getVocabularyBlock(vocabulary.getBlockStart(slot));
         int index = block.findIndex(key);
 
         if (index >= 0) {
@@ -465,7 +755,8 @@ public class IndexReader {
 
     /**
      * Like the other blockStream variant, but this one uses
-     * the current file location as the starting offset.
+     * the current file location as the starting offset.  This depends on
+     * the shared file pointer, so it isn't safe to use from multiple threads.
      */
     public DataStream blockStream(long len) throws IOException {
         return blockStream(input.getFilePointer(), len);
@@ -476,11 +767,24 @@ public class IndexReader {
      * a region of an inverted file.
      */
     public DataStream blockStream(long offset, long length) throws IOException {
-        long fileLength = input.length();
+        long fileLength = channel.size();
         assert offset <= fileLength;
         length = Math.min(fileLength - offset, length);
 
-        return new BufferedFileDataStream(input, offset, length + offset);
+        if (segments != null) {
+            int segment = (int) (offset >>> segmentShift);
+            long segmentStart = offset - ((long) segment << segmentShift);
+
+            if (segment < segments.length &&
+                    segmentStart + length <= segments[segment].capacity()) {
+                ByteBuffer view = segments[segment].duplicate();
+                view.position((int) segmentStart);
+                view.limit((int) (segmentStart + length));
+                return new ByteBufferDataStream(view);
+            }
+        }
+
+        return new BufferedFileDataStream(channel, offset, length + offset);
     }
 
     /**
@@ -488,7 +792,7 @@ public class IndexReader {
      * the region of the inverted file pointed to by the iterator.
      */
     public DataStream blockStream(Iterator iter) throws IOException {
-        return new BufferedFileDataStream(input, iter.getDataStart(), iter.getDataEnd());
+        return blockStream(iter.getDataStart(), iter.getDataEnd() - iter.getDataStart());
     }
 
     /**
@@ -500,12 +804,98 @@ public class IndexReader {
     }
 
     /**
-     * Closes all files associated with the IndexReader.
+     * Returns the channel for the inverted file.  Unlike the file returned by
+     * getInput, the channel can be read from many threads at once with
+     * positional reads.
+     */
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Returns true if this reader was opened in mapped mode.
+     */
+    public boolean isMapped() {
+        return segments != null;
+    }
+
+    /**
+     * Closes all files associated with the IndexReader.  Any mapped segments
+     * stay in memory until they are garbage collected.
      */
     public void close() throws IOException {
+        segments = null;
         input.close();
     }
     
+    /**
+     * Returns the number of vocabulary block lookups that were found in the cache.
+     */
+    public long getVocabularyCacheHits() {
+        return vocabularyCache == null ? 0 : vocabularyCache.getHits();
+    }
+
+    /**
+     * Returns the number of vocabulary block lookups that had to decode the block.
+     */
+    public long getVocabularyCacheMisses() {
+        return vocabularyCache == null ? 0 : vocabularyCache.getMisses();
+    }
+
+    /**
+     * Returns true if this file has a Bloom filter over its keys.
+     */
+    public boolean hasBloomFilter() {
+        return hasBloomFilter;
+    }
+
+    /**
+     * Returns the number of value block reads that were found in the cache.
+     */
+    public long getBlockCacheHits() {
+        return blockCache == null ? 0 : blockCache.getHits();
+    }
+
+    /**
+     * Returns the number of value block reads that had to decompress the block.
+     */
+    public long getBlockCacheMisses() {
+        return blockCache == null ? 0 : blockCache.getMisses();
+    }
+
+    /**
+     * Reads and decompresses all the values in a block.
+     */
+    byte[] readCompressedBlock(VocabularyBlock block) throws IOException {
+        int blockLength = (int) (block.getValuesEnd() - block.getValuesStart());
+        byte[] data = new byte[blockLength];
+        blockStream(block.getValuesStart(), blockLength).readFully(data);
+
+        int uncompressedLength = ByteBuffer.wrap(data).getInt();
+        byte[] decompressedData = new byte[uncompressedLength];
+        codec.decompress(data, 4, blockLength - 4, decompressedData);
+        return decompressedData;
+    }
+
+    /**
+     * Returns the decoded vocabulary block at slotBegin, using the cache
+     * if there is one.  This is used for key lookups; sequential scans call
+     * readVocabularyBlock directly so they don't push popular blocks out of
+     * the cache.
+     */
+    VocabularyBlock getVocabularyBlock(long slotBegin) throws IOException {
+        if (vocabularyCache == null) {
+            return readVocabularyBlock(slotBegin);
+        }
+
+        VocabularyBlock block = vocabularyCache.get(slotBegin);
+        if (block == null) {
+            block = readVocabularyBlock(slotBegin);
+            vocabularyCache.put(slotBegin, block);
+        }
+        return block;
+    }
+
     /**
      * Reads vocabulary data from a block of the inverted file.
      * 
@@ -536,7 +926,6 @@ public class IndexReader {
 
         int wordBlockCount = (int) Math.ceil((double) wordCount / vocabGroup);
         short[] wordBlockEnds = new short[wordBlockCount];
-        String[] words = new String[(int) wordCount];
         long[] invertedListEnds = new long[(int) wordCount];
 
         for (int i = 0; i < wordBlockCount; i++) {
@@ -547,36 +936,38 @@ public class IndexReader {
             invertedListEnds[i] = blockStream.readShort();
         }
 
+        // All the keys are decoded into one array.  Each key is at most
+        // 255 bytes long, since the lengths are stored in a byte.
+        byte[] keyData = new byte[(int) Math.min(wordCount * 255, 16 * wordCount + 256)];
+        int[] keyStarts = new int[(int) wordCount + 1];
+        int keyEnd = 0;
+
         for (int i = 0; i < wordCount; i += vocabGroup) {
             int suffixLength = blockStream.readUnsignedByte();
             int wordLength = suffixLength + prefixLength;
-            byte[] wordBytes = new byte[wordLength];
-            byte[] lastWordBytes = wordBytes;
-            System.arraycopy(prefixBytes, 0, wordBytes, 0, prefixBytes.length);
+            keyData = ensureCapacity(keyData, keyEnd + wordLength);
             int end = (int) Math.min(wordCount, i + vocabGroup);
 
-            blockStream.readFully(wordBytes, prefixBytes.length,
-                                  wordBytes.length - prefixBytes.length);
-            words[i] = Utility.makeString(wordBytes);
+            keyStarts[i] = keyEnd;
+            System.arraycopy(prefixBytes, 0, keyData, keyEnd, prefixLength);
+            blockStream.readFully(keyData, keyEnd + prefixLength, suffixLength);
+            int lastStart = keyEnd;
+            keyEnd += wordLength;
 
             for (int j = i + 1; j < end; j++) {
                 int common = blockStream.readUnsignedByte();
                 wordLength = blockStream.readUnsignedByte();
-                assert wordLength >= 0 : "Negative word length: " + wordLength + " " + j;
                 assert wordLength >= common : "word length too small: " + wordLength + " " + common + " " + j;
-                wordBytes = new byte[wordLength];
-
-                try {
-                    System.arraycopy(lastWordBytes, 0, wordBytes, 0, common);
-                    blockStream.readFully(wordBytes, common, wordLength - common);
-                } catch (ArrayIndexOutOfBoundsException e) {
-                    System.out.println("wl: " + wordLength + " c: " + common);
-                    throw e;
-                }
-                words[j] = Utility.makeString(wordBytes);
-                lastWordBytes = wordBytes;
+                keyData = ensureCapacity(keyData, keyEnd + wordLength);
+
+                keyStarts[j] = keyEnd;
+                System.arraycopy(keyData, lastStart, keyData, keyEnd, common);
+                blockStream.readFully(keyData, keyEnd + common, wordLength - common);
+                lastStart = keyEnd;
+                keyEnd += wordLength;
             }
         }
+        keyStarts[(int) wordCount] = keyEnd;
 
         int suffixBytes = wordBlockEnds[wordBlockEnds.length - 1];
         long headerLength = 8 + // word count
@@ -587,6 +978,16 @@ public class IndexReader {
                 suffixBytes;          // suffix storage 
 
         long startInvertedLists = slotBegin + headerLength;
-        return new VocabularyBlock(slotBegin, startInvertedLists, endBlock, invertedListEnds, words);
+        return new VocabularyBlock(slotBegin, startInvertedLists, endBlock,
+                                   invertedListEnds, keyData, keyStarts);
+    }
+
+    private static byte[] ensureCapacity(byte[] data, int length) {
+        if (data.length >= length) {
+            return data;
+        }
+        byte[] larger = new byte[Math.max(length, data.length * 2)];
+        System.arraycopy(data, 0, larger, 0, data.length);
+        return larger;
     }
 }
@@ -11,7 +11,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.zip.GZIPOutputStream;
+import org.galagosearch.core.util.BloomFilter;
 import org.galagosearch.tupleflow.Counter;
 import org.galagosearch.tupleflow.Parameters;
 import org.galagosearch.tupleflow.TupleFlowParameters;
@@ -27,6 +27,13 @@ import org.galagosearch.tupleflow.Utility;
  * For indexes, we assume that the data in each value is already compressed, so IndexWriter
  * does no additional compression.  However, if the isCompressed flag is set, IndexWriter
  * will compress the value data.  This is convenient for storing documents in an index.
+ * The compression method is chosen with the blockCodec parameter (see {@link BlockCodec}).
+ * 
+ * If the bloomFilterRate parameter is set, IndexWriter also writes a Bloom filter
+ * over all the keys, with about that false positive rate, between the vocabulary and
+ * the manifest.  Its offset is stored in a longer footer, marked with
+ * BLOOM_MAGIC_NUMBER instead of MAGIC_NUMBER.  Files without a filter keep the
+ * original footer.
  * 
  * Keys cannot be longer than 256 bytes, and they must be added in sorted order.
  * 
@@ -34,6 +41,7 @@ import org.galagosearch.tupleflow.Utility;
  */
 public class IndexWriter {
     public static final long MAGIC_NUMBER = 0x1a2b3c4d5e6f7a8bL;
+    public static final long BLOOM_MAGIC_NUMBER = 0x1a2b3c4d5e6f7a8cL;
 
     DataOutputStream output;
     final VocabularyWriter vocabulary;
@@ -44,8 +52,12 @@ public class IndexWriter {
     int vocabGroup = 16;
     long filePosition = 0;
     long listBytes = 0;
-    // compression isn't supported yet
     boolean isCompressed = false;
+    BlockCodec codec;
+    // the hash of every key, kept until close() when the filter can be sized
+    double bloomFilterRate = 0;
+    long[] keyHashes;
+    int keyCount;
 
     Counter recordsWritten = null;
     Counter blocksWritten = null;
@@ -65,6 +77,16 @@ public class IndexWriter {
         vocabulary = new VocabularyWriter();
         manifest = new Parameters();
         manifest.copy(parameters);
+
+        if (isCompressed) {
+            codec = BlockCodec.getCodec(parameters.get("blockCodec", "gzip"));
+            manifest.set("blockCodec", codec.getName());
+        }
+
+        bloomFilterRate = parameters.get("bloomFilterRate", 0.0);
+        if (bloomFilterRate > 0) {
+            keyHashes = new long[1024];
+        }
         lists = new ArrayList<IndexElement>();
     }
     
@@ -222,18 +244,18 @@ public class IndexWriter {
         }
         
         void compress() throws IOException {
+            ByteArrayOutputStream data = new ByteArrayOutputStream((int) length());
+            for (IndexElement element : blockLists) {
+                element.write(data);
+            }
+
             ByteArrayOutputStream stream = new ByteArrayOutputStream();
             
             // write the uncompressed length here
             DataOutputStream s = new DataOutputStream(stream);
             s.writeInt((int)length());
             
-            GZIPOutputStream gzipStream = new GZIPOutputStream(stream);
-            for (IndexElement element : blockLists) {
-                element.write(gzipStream);
-            }
-            
-            gzipStream.close();
+            codec.compress(data.toByteArray(), data.size(), stream);
             compressedData = stream.toByteArray();
         }
         
@@ -458,28 +480,54 @@ public class IndexWriter {
         }
         lists.add(list);
         updateBufferedSize(list);
+        if (keyHashes != null) {
+            addKeyHash(BloomFilter.hash(list.key()));
+        }
         if (recordsWritten != null) {
             recordsWritten.increment();
         }
     }
 
+    private void addKeyHash(long hash) {
+        if (keyCount == keyHashes.length) {
+            long[] larger = new long[keyHashes.length * 2];
+            System.arraycopy(keyHashes, 0, larger, 0, keyCount);
+            keyHashes = larger;
+        }
+        keyHashes[keyCount++] = hash;
+    }
+
     public void close() throws IOException {
         flush();
         
         byte[] vocabularyData = vocabulary.data();
         byte[] xmlData = manifest.toString().getBytes("UTF-8");
         long vocabularyOffset = filePosition;
-        long manifestOffset = filePosition + vocabularyData.length;
+        long bloomFilterOffset = filePosition + vocabularyData.length;
+        long manifestOffset = bloomFilterOffset;
         
         output.write(vocabularyData);
+
+        if (keyHashes != null) {
+            BloomFilter filter = new BloomFilter(keyCount, bloomFilterRate);
+            for (int i = 0; i < keyCount; i++) {
+                filter.add(keyHashes[i]);
+            }
+            filter.write(output);
+            manifestOffset += filter.getLength();
+        }
+
         output.write(xmlData);
         
+        if (keyHashes != null) {
+            output.writeLong(bloomFilterOffset);
+        }
         output.writeLong(vocabularyOffset);
         output.writeLong(manifestOffset);
         output.writeInt(blockSize);
         output.writeInt(vocabGroup);
         output.writeBoolean(isCompressed);
-        output.writeLong(MAGIC_NUMBER);
+        output.writeLong(keyHashes != null ? BLOOM_MAGIC_NUMBER : MAGIC_NUMBER);
         
         output.close();
     }
@@ -0,0 +1,202 @@
+// BSD License (http://www.galagosearch.org/license)
+
+package org.galagosearch.core.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import org.galagosearch.tupleflow.Utility;
+
+/**
+ * <p>Reads a document names file produced by PackedDocumentNameWriter.  The
+ * file is memory-mapped, and looked up in place: finding the name of a
+ * document decodes at most one group of names, and finding the number of a
+ * name is a binary search over the document numbers sorted by name.</p>
+ *
+ * <p>The file header is the magic number (a long), then four ints: the
+ * document count, the group size, and the offsets of the group offset table
+ * and of the sorted document numbers.  Names are decoded into a buffer that
+ * each thread reuses, so neither kind of lookup allocates anything except
+ * the returned name.</p>
+ *
+ * @author trevor
+ */
+public class PackedDocumentNameReader {
+    public static final long MAGIC_NUMBER = 0x6e616d65732e7031L;
+    public static final int HEADER_LENGTH = 8 + 4 * 4;
+    public static final int DEFAULT_GROUP_SIZE = 16;
+
+    RandomAccessFile file;
+    FileChannel channel;
+    ByteBuffer buffer;
+    int documentCount;
+    int groupSize;
+    int offsetsStart;
+    int reverseStart;
+
+    ThreadLocal<byte[]> scratch = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[256];
+        }
+    };
+
+    public PackedDocumentNameReader(String filename) throws IOException {
+        file = new RandomAccessFile(new File(filename), "r");
+        channel = file.getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+        if (buffer.capacity() < HEADER_LENGTH || buffer.getLong(0) != MAGIC_NUMBER) {
+            close();
+            throw new IOException(filename + " is not a packed document names file.");
+        }
+
+        documentCount = buffer.getInt(8);
+        groupSize = buffer.getInt(12);
+        offsetsStart = buffer.getInt(16);
+        reverseStart = buffer.getInt(20);
+    }
+
+    /**
+     * Returns true if filename looks like it was written by PackedDocumentNameWriter.
+     */
+    public static boolean isPackedNamesFile(String filename) throws IOException {
+        File f = new File(filename);
+        if (!f.isFile() || f.length() < HEADER_LENGTH) {
+            return false;
+        }
+        RandomAccessFile input = new RandomAccessFile(f, "r");
+        try {
+            return input.readLong() == MAGIC_NUMBER;
+        } finally {
+            input.close();
+        }
+    }
+
+    public void close() throws IOException {
+        channel.close();
+        file.close();
+    }
+
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    private int readVByte(int position) {
+        int value = 0;
+        int shift = 0;
+        int b;
+
+        do {
+            b = buffer.get(position++);
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+
+        return value;
+    }
+
+    private static int vbyteLength(int value) {
+        int length = 1;
+        while (value >= 0x80) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    private byte[] getScratch(int length) {
+        byte[] bytes = scratch.get();
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, 2 * bytes.length)];
+            scratch.set(bytes);
+        }
+        return bytes;
+    }
+
+    /**
+     * Decodes the name of document into this thread's scratch buffer, and
+     * returns its length in bytes.
+     */
+    private int decode(int document) {
+        int position = buffer.getInt(offsetsStart + 4 * (document / groupSize));
+        int headLength = readVByte(position);
+        position += vbyteLength(headLength);
+        int headStart = position;
+        int index = document % groupSize;
+
+        if (index == 0) {
+            byte[] bytes = getScratch(headLength);
+            for (int i = 0; i < headLength; i++) {
+                bytes[i] = buffer.get(headStart + i);
+            }
+            return headLength;
+        }
+
+        position += headLength;
+        for (int i = 1; i < index; i++) {
+            int shared = readVByte(position);
+            position += vbyteLength(shared);
+            int suffixLength = readVByte(position);
+            position += vbyteLength(suffixLength) + suffixLength;
+        }
+
+        int shared = readVByte(position);
+        position += vbyteLength(shared);
+        int suffixLength = readVByte(position);
+        position += vbyteLength(suffixLength);
+
+        byte[] bytes = getScratch(shared + suffixLength);
+        for (int i = 0; i < shared; i++) {
+            bytes[i] = buffer.get(headStart + i);
+        }
+        for (int i = 0; i < suffixLength; i++) {
+            bytes[shared + i] = buffer.get(position + i);
+        }
+        return shared + suffixLength;
+    }
+
+    /**
+     * Returns the name of document, or "unknown" if there is no such document.
+     */
+    public String get(int document) {
+        if (document < 0 || document >= documentCount) {
+            return "unknown";
+        }
+
+        int length = decode(document);
+        return Utility.makeString(scratch.get(), 0, length);
+    }
+
+    /**
+     * Returns the number of the document with this name, or -1 if there is
+     * no such document.
+     */
+    public int getDocumentNumber(byte[] name) {
+        int low = 0;
+        int high = documentCount - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int document = buffer.getInt(reverseStart + 4 * middle);
+            int length = decode(document);
+            int result = Utility.compare(scratch.get(), 0, length, name, 0, name.length);
+
+            if (result < 0) {
+                low = middle + 1;
+            } else if (result > 0) {
+                high = middle - 1;
+            } else {
+                return document;
+            }
+        }
+
+        return -1;
+    }
+
+    public int getDocumentNumber(String name) {
+        return getDocumentNumber(Utility.makeBytes(name));
+    }
+}
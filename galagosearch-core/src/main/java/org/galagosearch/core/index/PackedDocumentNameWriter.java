@@ -0,0 +1,137 @@
+// BSD License (http://www.galagosearch.org/license)
+
+package org.galagosearch.core.index;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import org.galagosearch.core.types.NumberedDocumentData;
+import org.galagosearch.tupleflow.Counter;
+import org.galagosearch.tupleflow.InputClass;
+import org.galagosearch.tupleflow.Processor;
+import org.galagosearch.tupleflow.TupleFlowParameters;
+import org.galagosearch.tupleflow.Utility;
+import org.galagosearch.tupleflow.execution.ErrorHandler;
+
+/**
+ * <p>Writes document names to a file that PackedDocumentNameReader can search
+ * in both directions.  Unlike DocumentNameWriter, this makes no assumptions
+ * about the form of the names.</p>
+ *
+ * <p>The file starts with a header (see PackedDocumentNameReader).  The names
+ * follow in document order, in groups of <tt>groupSize</tt> (default 16).  The
+ * first name of each group is stored whole; the others store the length of the
+ * prefix they share with the first name, and the rest of their bytes.  After
+ * the names come the offsets of the groups, then the document numbers sorted
+ * by name.</p>
+ *
+ * @author trevor
+ */
+@InputClass(className = "org.galagosearch.core.types.NumberedDocumentData")
+public class PackedDocumentNameWriter implements Processor<NumberedDocumentData> {
+    String filename;
+    int groupSize;
+    ArrayList<byte[]> names = new ArrayList<byte[]>();
+    Counter documentsWritten = null;
+
+    public PackedDocumentNameWriter(TupleFlowParameters parameters) {
+        filename = parameters.getXML().get("filename");
+        groupSize = (int) parameters.getXML().get("groupSize", PackedDocumentNameReader.DEFAULT_GROUP_SIZE);
+        documentsWritten = parameters.getCounter("Documents Written");
+    }
+
+    public void process(NumberedDocumentData numberedDocumentData) throws IOException {
+        assert numberedDocumentData.number == names.size();
+        names.add(Utility.makeBytes(numberedDocumentData.identifier));
+        if (documentsWritten != null) documentsWritten.increment();
+    }
+
+    private static void writeVByte(ByteArrayOutputStream output, int value) {
+        while (value >= 0x80) {
+            output.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+
+    private static int sharedPrefix(byte[] one, byte[] two) {
+        int length = Math.min(one.length, two.length);
+        int i = 0;
+        while (i < length && one[i] == two[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    public void close() throws IOException {
+        int documentCount = names.size();
+        int groupCount = (documentCount + groupSize - 1) / groupSize;
+        int[] groupOffsets = new int[groupCount];
+        ByteArrayOutputStream packed = new ByteArrayOutputStream();
+        byte[] head = null;
+
+        for (int i = 0; i < documentCount; i++) {
+            byte[] name = names.get(i);
+
+            if (i % groupSize == 0) {
+                head = name;
+                groupOffsets[i / groupSize] = PackedDocumentNameReader.HEADER_LENGTH + packed.size();
+                writeVByte(packed, name.length);
+                packed.write(name, 0, name.length);
+            } else {
+                int shared = sharedPrefix(head, name);
+                writeVByte(packed, shared);
+                writeVByte(packed, name.length - shared);
+                packed.write(name, shared, name.length - shared);
+            }
+        }
+
+        Integer[] byName = new Integer[documentCount];
+        for (int i = 0; i < documentCount; i++) {
+            byName[i] = i;
+        }
+        Arrays.sort(byName, new Comparator<Integer>() {
+            public int compare(Integer one, Integer two) {
+                int result = Utility.compare(names.get(one), names.get(two));
+                if (result != 0) {
+                    return result;
+                }
+                return one - two;
+            }
+        });
+
+        int offsetsStart = PackedDocumentNameReader.HEADER_LENGTH + packed.size();
+        int reverseStart = offsetsStart + 4 * groupCount;
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+        output.writeLong(PackedDocumentNameReader.MAGIC_NUMBER);
+        output.writeInt(documentCount);
+        output.writeInt(groupSize);
+        output.writeInt(offsetsStart);
+        output.writeInt(reverseStart);
+        packed.writeTo(output);
+        for (int offset : groupOffsets) {
+            output.writeInt(offset);
+        }
+        for (int document : byName) {
+            output.writeInt(document);
+        }
+        output.close();
+        names = null;
+    }
+
+    public static void verify(TupleFlowParameters parameters, ErrorHandler handler) {
+        if (!parameters.getXML().containsKey("filename")) {
+            handler.addError("PackedDocumentNameWriter requires an 'filename' parameter.");
+            return;
+        }
+        if (parameters.getXML().get("groupSize", PackedDocumentNameReader.DEFAULT_GROUP_SIZE) < 1) {
+            handler.addError("PackedDocumentNameWriter requires a positive 'groupSize' parameter.");
+        }
+    }
+}
@@ -0,0 +1,341 @@
+// BSD License (http://www.galagosearch.org/license)
+package org.galagosearch.core.index;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import org.galagosearch.core.retrieval.query.Node;
+import org.galagosearch.core.retrieval.query.NodeType;
+import org.galagosearch.core.retrieval.structured.AggregateIterator;
+import org.galagosearch.core.retrieval.structured.ExtentIterator;
+import org.galagosearch.core.retrieval.structured.IndexIterator;
+import org.galagosearch.core.util.ArraySearch;
+import org.galagosearch.core.util.ExtentArray;
+import org.galagosearch.tupleflow.DataStream;
+import org.galagosearch.tupleflow.VByteInput;
+
+/**
+ * Reads a positions index written by PackedPositionIndexWriter.  Postings
+ * are decoded a block at a time into int arrays that are reused for every
+ * block, and positions for a block are only decoded when extents() is called
+ * for one of its documents.  skipToDocument passes over whole blocks by
+ * reading only their headers.
+ *
+ * @author trevor
+ */
+public class PackedPositionIndexReader implements StructuredIndexPartReader {
+    static final int BLOCK_SIZE = PackedPositionIndexWriter.BLOCK_SIZE;
+
+    public class Iterator extends ExtentIterator implements IndexIterator, AggregateIterator {
+        IndexReader.Iterator iterator;
+        DataStream stream;
+        VByteInput input;
+
+        int documentCount;
+        int totalPositionCount;
+        int maximumPositionCount;
+
+        // the current block
+        int blockStart;
+        int blockLength;
+        int blockLastDocument;
+        int previousBlockLastDocument;
+        long documentsStart;
+        long positionsStart;
+        long blockEnd;
+        boolean positionsDecoded;
+
+        int[] documents = new int[BLOCK_SIZE];
+        int[] counts = new int[BLOCK_SIZE];
+        int[] positionStarts = new int[BLOCK_SIZE + 1];
+        int[] positions = new int[BLOCK_SIZE];
+        byte[] packed = new byte[4 * BLOCK_SIZE];
+
+        int documentIndex;
+        boolean extentsLoaded;
+        ExtentArray extentArray = new ExtentArray();
+
+        Iterator(IndexReader.Iterator iterator) throws IOException {
+            this.iterator = iterator;
+            load();
+        }
+
+        private void load() throws IOException {
+            stream = iterator.getValueStream();
+            input = new VByteInput(stream);
+
+            documentCount = input.readInt();
+            totalPositionCount = input.readInt();
+            maximumPositionCount = input.readInt();
+
+            documentIndex = 0;
+            blockStart = 0;
+            blockLength = 0;
+            blockLastDocument = 0;
+            extentsLoaded = false;
+
+            if (documentCount > 0) {
+                readBlockHeader();
+                decodeBlock();
+            }
+        }
+
+        /**
+         * Reads the header of the block that starts at the current stream
+         * position, which holds documents starting at blockStart.
+         */
+        private void readBlockHeader() throws IOException {
+            previousBlockLastDocument = blockLastDocument;
+            blockLastDocument += input.readInt();
+            int documentsLength = input.readInt();
+            int positionsLength = input.readInt();
+
+            documentsStart = stream.getPosition();
+            positionsStart = documentsStart + documentsLength;
+            blockEnd = positionsStart + positionsLength;
+            blockLength = Math.min(BLOCK_SIZE, documentCount - blockStart);
+            positionsDecoded = false;
+        }
+
+        private void nextBlock() throws IOException {
+            blockStart += blockLength;
+            stream.seek(blockEnd);
+            readBlockHeader();
+        }
+
+        private void readPacked(int[] output, int offset, int count) throws IOException {
+            int minimum = input.readInt();
+            int bits = stream.readUnsignedByte();
+            int length = BitPacking.packedLength(count, bits);
+
+            if (packed.length < length) {
+                packed = new byte[length];
+            }
+            stream.readFully(packed, 0, length);
+            BitPacking.unpack(packed, 0, bits, minimum, output, offset, count);
+        }
+
+        private void decodeBlock() throws IOException {
+            stream.seek(documentsStart);
+            readPacked(documents, 0, blockLength);
+            readPacked(counts, 0, blockLength);
+
+            int document = previousBlockLastDocument;
+            for (int i = 0; i < blockLength; i++) {
+                document += documents[i];
+                documents[i] = document;
+            }
+        }
+
+        private void decodePositions() throws IOException {
+            int total = 0;
+            for (int i = 0; i < blockLength; i++) {
+                positionStarts[i] = total;
+                total += counts[i];
+            }
+            positionStarts[blockLength] = total;
+
+            if (positions.length < total) {
+                positions = new int[Math.max(total, positions.length * 2)];
+            }
+
+            stream.seek(positionsStart);
+            for (int i = 0; i < total; i += BLOCK_SIZE) {
+                readPacked(positions, i, Math.min(BLOCK_SIZE, total - i));
+            }
+
+            for (int i = 0; i < blockLength; i++) {
+                int position = 0;
+                for (int j = positionStarts[i]; j < positionStarts[i + 1]; j++) {
+                    position += positions[j];
+                    positions[j] = position;
+                }
+            }
+            positionsDecoded = true;
+        }
+
+        private void loadExtents() throws IOException {
+            if (!positionsDecoded) {
+                decodePositions();
+            }
+
+            int index = documentIndex - blockStart;
+            int document = documents[index];
+            extentArray.reset();
+            for (int j = positionStarts[index]; j < positionStarts[index + 1]; j++) {
+                extentArray.add(document, positions[j], positions[j] + 1);
+            }
+            extentsLoaded = true;
+        }
+
+        @Override
+        public boolean skipToDocument(int document) throws IOException {
+            if (isDone()) {
+                return false;
+            }
+            if (document <= document()) {
+                return document == document();
+            }
+
+            // pass over blocks that end before the target
+            if (blockLastDocument < document) {
+                while (blockLastDocument < document && blockStart + blockLength < documentCount) {
+                    nextBlock();
+                }
+
+                if (blockLastDocument < document) {
+                    documentIndex = documentCount;
+                    return false;
+                }
+
+                documentIndex = blockStart;
+                decodeBlock();
+            }
+
+            int index = ArraySearch.gallop(documents, documentIndex - blockStart,
+                                           blockLength, document);
+            documentIndex = blockStart + index;
+            extentsLoaded = false;
+            return documents[index] == document;
+        }
+
+        public void nextDocument() throws IOException {
+            documentIndex++;
+            extentsLoaded = false;
+
+            if (!isDone() && documentIndex >= blockStart + blockLength) {
+                nextBlock();
+                decodeBlock();
+            }
+        }
+
+        public boolean nextRecord() throws IOException {
+            nextDocument();
+            if (!isDone()) {
+                return true;
+            }
+            if (iterator.nextKey()) {
+                load();
+                return true;
+            }
+            return false;
+        }
+
+        public String getRecordString() {
+            StringBuilder builder = new StringBuilder();
+
+            builder.append(iterator.getKey());
+            builder.append(",");
+            builder.append(document());
+            ExtentArray extents = extents();
+            for (int i = 0; i < extents.getPosition(); ++i) {
+                builder.append(",");
+                builder.append(extents.begin(i));
+            }
+
+            return builder.toString();
+        }
+
+        public void reset() throws IOException {
+            load();
+        }
+
+        public boolean isDone() {
+            return documentIndex >= documentCount;
+        }
+
+        public ExtentArray extents() {
+            if (!extentsLoaded) {
+                try {
+                    loadExtents();
+                } catch (IOException e) {
+                    throw new RuntimeException("Couldn't decode positions for document " +
+                                               document(), e);
+                }
+            }
+            return extentArray;
+        }
+
+        /**
+         * Index of the current document in the block arrays.  Once the
+         * iterator is done this stays on the last document, like
+         * PositionIndexReader does.
+         */
+        private int blockIndex() {
+            return Math.max(0, Math.min(documentIndex - blockStart, blockLength - 1));
+        }
+
+        public int document() {
+            return documents[blockIndex()];
+        }
+
+        public int count() {
+            return counts[blockIndex()];
+        }
+
+        public long documentFrequency() {
+            return documentCount;
+        }
+
+        public long collectionFrequency() {
+            return totalPositionCount;
+        }
+
+        public long maximumCount() {
+            return maximumPositionCount;
+        }
+
+        public long getByteLength() throws IOException {
+            return iterator.getValueLength();
+        }
+
+        public String getCurrentTerm() throws IOException {
+            return iterator.getKey();
+        }
+    }
+    IndexReader reader;
+
+    public PackedPositionIndexReader(IndexReader reader) throws IOException {
+        this.reader = reader;
+    }
+
+    public PackedPositionIndexReader(String pathname) throws FileNotFoundException, IOException {
+        reader = new IndexReader(pathname);
+    }
+
+    /**
+     * Returns an iterator pointing at the first term in the index.
+     */
+    public Iterator getIterator() throws IOException {
+        return new Iterator(reader.getIterator());
+    }
+
+    /**
+     * Returns an iterator pointing at the specified term, or
+     * null if the term doesn't exist in the inverted file.
+     */
+    public Iterator getTermExtents(String term) throws IOException {
+        IndexReader.Iterator iterator = reader.getIterator(term);
+
+        if (iterator != null) {
+            return new Iterator(iterator);
+        }
+        return null;
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    public Map<String, NodeType> getNodeTypes() {
+        HashMap<String, NodeType> types = new HashMap<String, NodeType>();
+        types.put("counts", new NodeType(Iterator.class));
+        types.put("extents", new NodeType(Iterator.class));
+        return types;
+    }
+
+    public IndexIterator getIterator(Node node) throws IOException {
+        return getTermExtents(node.getDefaultParameter("term"));
+    }
+}
@@ -0,0 +1,193 @@
+// BSD License (http://www.galagosearch.org/license)
+package org.galagosearch.core.index;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.galagosearch.core.types.NumberWordPosition;
+import org.galagosearch.tupleflow.InputClass;
+import org.galagosearch.tupleflow.TupleFlowParameters;
+import org.galagosearch.tupleflow.Utility;
+import org.galagosearch.tupleflow.execution.ErrorHandler;
+import org.galagosearch.tupleflow.execution.Verification;
+
+/**
+ * <p>Writes a positions index where postings are stored in blocks of
+ * BLOCK_SIZE documents, using frame-of-reference bit packing (see BitPacking)
+ * instead of one vbyte per value.  This holds the same data as
+ * PositionIndexWriter, and is read by PackedPositionIndexReader.</p>
+ *
+ * <p>Each list starts with a vbyte header: the document count, the total
+ * position count and the largest count in any document.  Then come the
+ * blocks.  Every block starts with three vbytes: the last document in the
+ * block (as a delta from the last document of the previous block), the byte
+ * length of the document section and the byte length of the positions section.
+ * The document section holds the packed document deltas followed by the packed
+ * counts.  The positions section holds the position deltas for every document
+ * in the block, packed BLOCK_SIZE at a time.  A reader can skip a block by
+ * reading just its header.</p>
+ *
+ * @author trevor
+ */
+@InputClass(className = "org.galagosearch.core.types.NumberWordPosition", order = {"+word", "+document", "+position"})
+public class PackedPositionIndexWriter implements
+        NumberWordPosition.WordDocumentPositionOrder.ShreddedProcessor {
+    public static final int BLOCK_SIZE = 128;
+
+    public class PackedPositionsList implements IndexElement {
+        byte[] word;
+        BackedCompressedByteBuffer header;
+        BackedCompressedByteBuffer blocks;
+
+        int[] documents = new int[BLOCK_SIZE];
+        int[] counts = new int[BLOCK_SIZE];
+        int[] positions = new int[BLOCK_SIZE];
+        int blockDocumentCount;
+        int blockPositionCount;
+
+        int documentCount;
+        int totalPositionCount;
+        int maximumPositionCount;
+        int lastDocument;
+        int lastBlockDocument;
+        int lastPosition;
+
+        public PackedPositionsList(byte[] word) {
+            this.word = word;
+            header = new BackedCompressedByteBuffer();
+            blocks = new BackedCompressedByteBuffer();
+        }
+
+        public void addDocument(int document) throws IOException {
+            if (blockDocumentCount == BLOCK_SIZE) {
+                flushBlock();
+            }
+
+            documents[blockDocumentCount] = document - lastDocument;
+            counts[blockDocumentCount] = 0;
+            blockDocumentCount++;
+            documentCount++;
+            lastDocument = document;
+            lastPosition = 0;
+        }
+
+        public void addPosition(int position) {
+            if (blockPositionCount == positions.length) {
+                int[] larger = new int[positions.length * 2];
+                System.arraycopy(positions, 0, larger, 0, positions.length);
+                positions = larger;
+            }
+
+            positions[blockPositionCount] = position - lastPosition;
+            blockPositionCount++;
+            lastPosition = position;
+
+            int count = ++counts[blockDocumentCount - 1];
+            maximumPositionCount = Math.max(count, maximumPositionCount);
+            totalPositionCount++;
+        }
+
+        private void flushBlock() throws IOException {
+            if (blockDocumentCount == 0) {
+                return;
+            }
+
+            CompressedByteBuffer documentSection = new CompressedByteBuffer();
+            BitPacking.pack(documentSection, documents, 0, blockDocumentCount);
+            BitPacking.pack(documentSection, counts, 0, blockDocumentCount);
+
+            CompressedByteBuffer positionSection = new CompressedByteBuffer();
+            for (int i = 0; i < blockPositionCount; i += BLOCK_SIZE) {
+                int length = Math.min(BLOCK_SIZE, blockPositionCount - i);
+                BitPacking.pack(positionSection, positions, i, length);
+            }
+
+            blocks.add(lastDocument - lastBlockDocument);
+            blocks.add(documentSection.length());
+            blocks.add(positionSection.length());
+            blocks.add(documentSection);
+            blocks.add(positionSection);
+
+            lastBlockDocument = lastDocument;
+            blockDocumentCount = 0;
+            blockPositionCount = 0;
+        }
+
+        public void close() throws IOException {
+            flushBlock();
+            header.add(documentCount);
+            header.add(totalPositionCount);
+            header.add(maximumPositionCount);
+        }
+
+        public byte[] key() {
+            return word;
+        }
+
+        public long dataLength() {
+            return header.length() + blocks.length();
+        }
+
+        public void write(final OutputStream output) throws IOException {
+            header.write(output);
+            header.clear();
+
+            blocks.write(output);
+            blocks.clear();
+        }
+    }
+    byte[] lastWord;
+    PackedPositionsList invertedList;
+    IndexWriter writer;
+
+    public PackedPositionIndexWriter(TupleFlowParameters parameters) throws FileNotFoundException, IOException {
+        writer = new IndexWriter(parameters);
+        writer.getManifest().add("writerClass", getClass().getName());
+        writer.getManifest().add("readerClass", PackedPositionIndexReader.class.getName());
+        writer.getManifest().set("postingsBlockSize", Integer.toString(BLOCK_SIZE));
+    }
+
+    public void processWord(byte[] wordBytes) throws IOException {
+        if (invertedList != null) {
+            invertedList.close();
+            writer.add(invertedList);
+            invertedList = null;
+        }
+
+        invertedList = new PackedPositionsList(wordBytes);
+
+        assert lastWord == null || 0 != Utility.compare(lastWord, wordBytes) : "Duplicate word";
+        lastWord = wordBytes;
+    }
+
+    public void processDocument(int document) throws IOException {
+        invertedList.addDocument(document);
+    }
+
+    public void processPosition(int position) throws IOException {
+        invertedList.addPosition(position);
+    }
+
+    public void processTuple() {
+        // does nothing
+    }
+
+    public void close() throws IOException {
+        if (invertedList != null) {
+            invertedList.close();
+            writer.add(invertedList);
+        }
+
+        writer.close();
+    }
+
+    public static void verify(TupleFlowParameters parameters, ErrorHandler handler) {
+        if (!parameters.getXML().containsKey("filename")) {
+            handler.addError("PackedPositionIndexWriter requires an 'filename' parameter.");
+            return;
+        }
+
+        String index = parameters.getXML().get("filename");
+        Verification.requireWriteableFile(index, handler);
+    }
+}
@@ -4,7 +4,6 @@ package org.galagosearch.core.index;
 import java.io.DataInput;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -12,11 +11,13 @@ import org.galagosearch.core.parse.Document;
 import org.galagosearch.core.index.IndexReader;
 import org.galagosearch.core.retrieval.query.Node;
 import org.galagosearch.core.retrieval.query.NodeType;
+import org.galagosearch.core.retrieval.structured.AggregateIterator;
 import org.galagosearch.core.retrieval.structured.CountIterator;
 import org.galagosearch.core.retrieval.structured.ExtentIterator;
 import org.galagosearch.core.retrieval.structured.IndexIterator;
+import org.galagosearch.core.util.ArraySearch;
 import org.galagosearch.core.util.ExtentArray;
-import org.galagosearch.tupleflow.BufferedFileDataStream;
+import org.galagosearch.tupleflow.DataStream;
 import org.galagosearch.tupleflow.Processor;
 import org.galagosearch.tupleflow.VByteInput;
 
@@ -24,23 +25,42 @@ import org.galagosearch.tupleflow.VByteInput;
  * Reads a simple positions-based index, where each inverted list in the
  * index contains both term count information and term position information.
  * The term counts data is stored separately from term position information for
- * faster query processing when no positions are needed.
+ * faster query processing when no positions are needed.  Positions for a
+ * document are only decoded when extents() is called for it; positions for
+ * documents that were passed over are skipped without being decoded.
  * 
- * For now, the iterator loads everything into memory before starting query 
- * processing, which is not a workable solution for larger collections.
+ * Longer lists are preceded by a table of skip entries, written every
+ * skipDistance documents, which lets skipToDocument jump directly into the
+ * middle of the documents, counts and positions streams.  Lists written before
+ * skips existed have no HAS_SKIPS option bit and are simply read linearly.
  * 
  * @author trevor
  */
 public class PositionIndexReader implements StructuredIndexPartReader {
-    public class Iterator extends ExtentIterator implements IndexIterator {
+    public class Iterator extends ExtentIterator implements IndexIterator, AggregateIterator {
         int documentCount;
         int totalPositionCount;
+        int maximumPositionCount;
+        DataStream documentsStream;
+        DataStream countsStream;
+        DataStream positionsStream;
         VByteInput documents;
         VByteInput counts;
         VByteInput positions;
+        int skipDistance;
+        int skipCount;
+        long skipsStart;
+        long skipsEnd;
+        int[] skipDocuments;
+        long[] skipDocumentsOffsets;
+        long[] skipCountsOffsets;
+        long[] skipPositionsOffsets;
         int documentIndex;
         int currentDocument;
         int currentCount;
+        boolean extentsLoaded;
+        int positionsToSkip;
+        int[] positionBuffer = new int[16];
         ExtentArray extentArray;
         IndexReader.Iterator iterator;
 
@@ -53,19 +73,39 @@ public class PositionIndexReader implements StructuredIndexPartReader {
             long startPosition = iterator.getValueStart();
             long endPosition = iterator.getValueEnd();
 
-            RandomAccessFile input = reader.getInput();
-            input.seek(startPosition);
-            DataInput stream = new VByteInput(reader.getInput());
+            DataStream valueStream = reader.blockStream(startPosition, endPosition - startPosition);
+            DataInput stream = new VByteInput(valueStream);
 
             int options = stream.readInt();
             documentCount = stream.readInt();
             totalPositionCount = stream.readInt();
 
+            // Older lists don't store the largest count, but no document
+            // can have more positions than the others leave over.
+            if ((options & PositionIndexWriter.HAS_MAXIMUM_COUNT) != 0) {
+                maximumPositionCount = stream.readInt();
+            } else {
+                maximumPositionCount = totalPositionCount - documentCount + 1;
+            }
+
+            long skipsByteLength = 0;
+            skipDistance = 0;
+            skipCount = 0;
+            skipDocuments = null;
+            if ((options & PositionIndexWriter.HAS_SKIPS) != 0) {
+                skipDistance = stream.readInt();
+                skipCount = stream.readInt();
+                skipsByteLength = stream.readLong();
+            }
+
             long documentByteLength = stream.readLong();
             long countsByteLength = stream.readLong();
             long positionsByteLength = stream.readLong();
 
-            long documentStart = input.getFilePointer();
+            skipsStart = startPosition + valueStream.getPosition();
+            skipsEnd = skipsStart + skipsByteLength;
+
+            long documentStart = skipsEnd;
             long documentEnd = documentStart + documentByteLength;
 
             long countsStart = documentEnd;
@@ -77,25 +117,128 @@ public class PositionIndexReader implements StructuredIndexPartReader {
             assert positionsEnd == endPosition;
 
             // create streams for each kind of data
-            documents = new VByteInput(new BufferedFileDataStream(input, documentStart, documentEnd));
-            counts = new VByteInput(new BufferedFileDataStream(input, countsStart, countsEnd));
-            positions = new VByteInput(new BufferedFileDataStream(input, positionsStart, positionsEnd));
+            documentsStream = reader.blockStream(documentStart, documentByteLength);
+            countsStream = reader.blockStream(countsStart, countsByteLength);
+            positionsStream = reader.blockStream(positionsStart, positionsByteLength);
+
+            documents = new VByteInput(documentsStream);
+            counts = new VByteInput(countsStream);
+            positions = new VByteInput(positionsStream);
 
             extentArray = new ExtentArray();
             documentIndex = 0;
-            loadExtents();
+            currentDocument = 0;
+            currentCount = 0;
+            positionsToSkip = 0;
+            extentsLoaded = false;
+            loadDocument();
         }
 
-        private void loadExtents() throws IOException {
+        /**
+         * Reads the document number and count for the next document.  The
+         * positions of the previous document, if nobody asked for them, are
+         * added to the backlog of positions to skip.
+         */
+        private void loadDocument() throws IOException {
+            if (!extentsLoaded) {
+                positionsToSkip += currentCount;
+            }
+
             currentDocument += documents.readInt();
             currentCount = counts.readInt();
+            extentsLoaded = false;
+        }
+
+        private void loadExtents() throws IOException {
+            positions.skipInts(positionsToSkip);
+            positionsToSkip = 0;
             extentArray.reset();
 
+            if (positionBuffer.length < currentCount) {
+                positionBuffer = new int[Math.max(currentCount, positionBuffer.length * 2)];
+            }
+            positions.readInts(positionBuffer, 0, currentCount);
+
             int position = 0;
             for (int i = 0; i < currentCount; i++) {
-                position += positions.readInt();
+                position += positionBuffer[i];
                 extentArray.add(currentDocument, position, position + 1);
             }
+            extentsLoaded = true;
+        }
+
+        /**
+         * Decodes the skip table for this list.  This is only done the first
+         * time a skip is requested, so iterators that are only ever scanned
+         * linearly never pay for it.
+         */
+        private void loadSkips() throws IOException {
+            VByteInput stream = new VByteInput(
+                    reader.blockStream(skipsStart, skipsEnd - skipsStart));
+
+            skipDocuments = new int[skipCount];
+            skipDocumentsOffsets = new long[skipCount];
+            skipCountsOffsets = new long[skipCount];
+            skipPositionsOffsets = new long[skipCount];
+
+            int document = 0;
+            long documentsOffset = 0;
+            long countsOffset = 0;
+            long positionsOffset = 0;
+
+            for (int i = 0; i < skipCount; i++) {
+                document += stream.readInt();
+                documentsOffset += stream.readLong();
+                countsOffset += stream.readLong();
+                positionsOffset += stream.readLong();
+
+                skipDocuments[i] = document;
+                skipDocumentsOffsets[i] = documentsOffset;
+                skipCountsOffsets[i] = countsOffset;
+                skipPositionsOffsets[i] = positionsOffset;
+            }
+        }
+
+        /**
+         * Moves all three streams to the start of the document that follows
+         * skip entry i, which is document number (i+1)*skipDistance in the list.
+         */
+        private void jumpToSkip(int i) throws IOException {
+            documentsStream.seek(skipDocumentsOffsets[i]);
+            countsStream.seek(skipCountsOffsets[i]);
+            positionsStream.seek(skipPositionsOffsets[i]);
+
+            currentDocument = skipDocuments[i];
+            currentCount = 0;
+            positionsToSkip = 0;
+            extentsLoaded = true;
+            documentIndex = (i + 1) * skipDistance;
+            loadDocument();
+        }
+
+        @Override
+        public boolean skipToDocument(int document) throws IOException {
+            if (isDone()) {
+                return false;
+            }
+
+            if (skipCount > 0 && document > currentDocument) {
+                if (skipDocuments == null) {
+                    loadSkips();
+                }
+
+                // Entry i covers the documents before index (i+1)*skipDistance, and
+                // skipDocuments[i] is the last of them.  Use the furthest entry that
+                // is still ahead of us and ends before the target document.
+                int first = documentIndex / skipDistance;
+                int next = ArraySearch.gallop(skipDocuments, first, skipCount, document);
+
+                if (next > first) {
+                    jumpToSkip(next - 1);
+                }
+            }
+
+            return super.skipToDocument(document);
         }
         
         public String getRecordString() {
@@ -104,9 +247,10 @@ public class PositionIndexReader implements StructuredIndexPartReader {
             builder.append(iterator.getKey());
             builder.append(",");
             builder.append(currentDocument);
-            for (int i = 0; i < extentArray.getPosition(); ++i) {
+            ExtentArray extents = extents();
+            for (int i = 0; i < extents.getPosition(); ++i) {
                 builder.append(",");
-                builder.append(extentArray.getBuffer()[i].begin);
+                builder.append(extents.begin(i));
             }
             
             return builder.toString();
@@ -132,7 +276,7 @@ public class PositionIndexReader implements StructuredIndexPartReader {
             documentIndex += 1;
 
             if (!isDone()) {
-                loadExtents();
+                loadDocument();
             }
         }
 
@@ -151,6 +295,14 @@ public class PositionIndexReader implements StructuredIndexPartReader {
         }
 
         public ExtentArray extents() {
+            if (!extentsLoaded) {
+                try {
+                    loadExtents();
+                } catch (IOException e) {
+                    throw new RuntimeException("Couldn't decode positions for document " +
+                                               currentDocument, e);
+                }
+            }
             return extentArray;
         }
 
@@ -161,6 +313,18 @@ public class PositionIndexReader implements StructuredIndexPartReader {
         public int count() {
             return currentCount;
         }
+
+        public long documentFrequency() {
+            return documentCount;
+        }
+
+        public long collectionFrequency() {
+            return totalPositionCount;
+        }
+
+        public long maximumCount() {
+            return maximumPositionCount;
+        }
     }
     IndexReader reader;
 
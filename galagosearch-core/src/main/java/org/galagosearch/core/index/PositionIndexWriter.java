@@ -20,7 +20,13 @@ import org.galagosearch.tupleflow.execution.Verification;
 @InputClass(className = "org.galagosearch.core.types.NumberWordPosition", order = {"+word", "+document", "+position"})
 public class PositionIndexWriter implements
         NumberWordPosition.WordDocumentPositionOrder.ShreddedProcessor {
+    /// Set in the list options when the list is preceded by a skip table.
+    public static final int HAS_SKIPS = 1;
+    /// Set in the list options when the header stores the largest count in the list.
+    public static final int HAS_MAXIMUM_COUNT = 2;
+
     int blockSize = 32768;
+    int skipDistance = 128;
     byte[] lastWord;
     long lastPosition = 0;
     long lastDocument = 0;
@@ -32,19 +38,30 @@ public class PositionIndexWriter implements
             documents = new BackedCompressedByteBuffer();
             counts = new BackedCompressedByteBuffer();
             positions = new BackedCompressedByteBuffer();
+            skips = new BackedCompressedByteBuffer();
             header = new BackedCompressedByteBuffer();
         }
 
         public void close() throws IOException {
-            int options = 0;
+            int options = HAS_MAXIMUM_COUNT;
 
             if (documents.length() > 0) {
                 counts.add(positionCount);
             }
+            if (skipCount > 0) {
+                options |= HAS_SKIPS;
+            }
             header.add(options);
 
             header.add(documentCount);
             header.add(totalPositionCount);
+            header.add(maximumPositionCount);
+
+            if ((options & HAS_SKIPS) != 0) {
+                header.add(skipDistance);
+                header.add(skipCount);
+                header.add(skips.length());
+            }
 
             header.add(documents.length());
             header.add(counts.length());
@@ -55,6 +72,7 @@ public class PositionIndexWriter implements
             long listLength = 0;
 
             listLength += header.length();
+            listLength += skips.length();
             listLength += counts.length();
             listLength += positions.length();
             listLength += documents.length();
@@ -66,6 +84,9 @@ public class PositionIndexWriter implements
             header.write(output);
             header.clear();
 
+            skips.write(output);
+            skips.clear();
+
             documents.write(output);
             documents.clear();
 
@@ -88,11 +109,34 @@ public class PositionIndexWriter implements
             this.positionCount = 0;
         }
 
+        /**
+         * Records where the next document starts in each of the three
+         * streams, along with the document number it is delta coded against.
+         * The reader uses these entries to jump over whole runs of documents
+         * without decoding them.
+         */
+        private void addSkip() throws IOException {
+            skips.add(lastDocument - lastSkipDocument);
+            skips.add(documents.length() - lastSkipDocumentsOffset);
+            skips.add(counts.length() - lastSkipCountsOffset);
+            skips.add(positions.length() - lastSkipPositionsOffset);
+
+            lastSkipDocument = lastDocument;
+            lastSkipDocumentsOffset = documents.length();
+            lastSkipCountsOffset = counts.length();
+            lastSkipPositionsOffset = positions.length();
+            skipCount++;
+        }
+
         public void addDocument(long documentID) throws IOException {
             // add the last document's counts
             if (documents.length() > 0) {
                 counts.add(positionCount);
             }
+            // every skipDistance documents, note where the next one starts
+            if (skipDistance > 0 && documentCount > 0 && documentCount % skipDistance == 0) {
+                addSkip();
+            }
             documents.add(documentID - lastDocument);
             lastDocument = documentID;
 
@@ -104,6 +148,7 @@ public class PositionIndexWriter implements
         public void addPosition(int position) throws IOException {
             positionCount++;
             totalPositionCount++;
+            maximumPositionCount = Math.max(positionCount, maximumPositionCount);
             positions.add(position - lastPosition);
             lastPosition = position;
         }
@@ -112,8 +157,15 @@ public class PositionIndexWriter implements
         private int positionCount;
         private int documentCount;
         private int totalPositionCount;
+        private int maximumPositionCount;
+        private int skipCount;
+        private long lastSkipDocument;
+        private long lastSkipDocumentsOffset;
+        private long lastSkipCountsOffset;
+        private long lastSkipPositionsOffset;
         public byte[] word;
         public BackedCompressedByteBuffer header;
+        public BackedCompressedByteBuffer skips;
         public BackedCompressedByteBuffer documents;
         public BackedCompressedByteBuffer counts;
         public BackedCompressedByteBuffer positions;
@@ -132,8 +184,10 @@ public class PositionIndexWriter implements
      */
     public PositionIndexWriter(TupleFlowParameters parameters) throws FileNotFoundException, IOException {
         writer = new IndexWriter(parameters);
+        skipDistance = (int) parameters.getXML().get("skipDistance", skipDistance);
         writer.getManifest().add("writerClass", getClass().getName());
         writer.getManifest().add("readerClass", PositionIndexReader.class.getName());
+        writer.getManifest().set("skipDistance", Integer.toString(skipDistance));
     }
 
     public void processWord(byte[] wordBytes) throws IOException {
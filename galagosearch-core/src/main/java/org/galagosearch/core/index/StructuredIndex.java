@@ -9,48 +9,154 @@ import org.galagosearch.tupleflow.Parameters;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
+ * <p>Opens all the parts of an index directory.  Once opened, a StructuredIndex
+ * is never modified, and every read goes through positional reads, so one
+ * instance can serve queries from many threads at once.</p>
+ *
+ * <p>Opening a part only reads the footer and manifest of its file.  The
+ * vocabulary of a part, and the document names, are read the first time
+ * they're needed, so startup time and memory use depend on the parts a
+ * workload actually uses.  If the <tt>preloadParts</tt> parameter is true,
+ * everything is read when the index is opened instead, using
+ * <tt>preloadThreads</tt> threads (default: one per processor).</p>
  *
  * @author trevor
  */
 public class StructuredIndex {
     DocumentLengthsReader documentLengths;
+    String documentNamesFilename;
+    String documentNameIndexFilename;
     DocumentNameReader documentNames;
+    PackedDocumentNameReader packedDocumentNames;
     Map<String, StructuredIndexPartReader> parts;
+    Map<String, IndexReader> partReaders;
     Parameters manifest;
 
     HashMap<String, String> defaultIndexOperators = new HashMap<String, String>();
     HashSet<String> knownIndexOperators = new HashSet<String>();
+    // parts build their node type maps on every call, so they're kept here
+    HashMap<StructuredIndexPartReader, Map<String, NodeType>> partNodeTypes =
+            new HashMap<StructuredIndexPartReader, Map<String, NodeType>>();
 
     public StructuredIndex(String filename) throws IOException {
+        this(filename, new Parameters());
+    }
+
+    /**
+     * Opens the index at filename.  The parameters are passed to the IndexReader
+     * of every index part; for instance, if <tt>mmap</tt> is true, every part
+     * is memory-mapped.
+     */
+    public StructuredIndex(String filename, Parameters parameters) throws IOException {
         manifest = new Parameters();
         manifest.parse(filename + File.separator + "manifest");
         documentLengths = new DocumentLengthsReader(filename + File.separator + "documentLengths");
-        documentNames = new DocumentNameReader(filename + File.separator + "documentNames");
+        documentNamesFilename = filename + File.separator + "documentNames";
+        documentNameIndexFilename = filename + File.separator + "documentNameIndex";
 
         File partsDirectory = new File(filename + File.separator + "parts");
         parts = new HashMap<String, StructuredIndexPartReader>();
+        partReaders = new HashMap<String, IndexReader>();
         for (File part : partsDirectory.listFiles()) {
-            StructuredIndexPartReader reader = openIndexPart(part.getAbsolutePath());
-            if (reader == null) {
+            String path = part.getAbsolutePath();
+            if (!IndexReader.isIndexFile(path)) {
                 continue;
             }
-            parts.put(part.getName(), reader);
+            IndexReader reader = new IndexReader(path, parameters);
+            partReaders.put(part.getName(), reader);
+            parts.put(part.getName(), openIndexPart(path, reader));
         }
         
         initializeIndexOperators();
+
+        if (parameters.get("preloadParts", false)) {
+            int threads = (int) parameters.get("preloadThreads",
+                                               (long) Runtime.getRuntime().availableProcessors());
+            preload(threads);
+        }
+    }
+
+    /**
+     * Reads the vocabularies of all the parts, and the document names,
+     * using up to the given number of threads.
+     */
+    public void preload(int threads) throws IOException {
+        ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (final IndexReader reader : partReaders.values()) {
+            tasks.add(new Callable<Object>() {
+                public Object call() throws IOException {
+                    reader.loadVocabulary();
+                    return null;
+                }
+            });
+        }
+        tasks.add(new Callable<Object>() {
+            public Object call() throws IOException {
+                loadDocumentNames();
+                return null;
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())));
+        try {
+            for (Future<Object> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while opening index parts");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            IOException ex = new IOException("Couldn't open an index part");
+            ex.initCause(e.getCause());
+            throw ex;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Opens the document names.  Indexes built with a documentNameIndex file
+     * are searched in place; older indexes only have the documentNames file,
+     * which is read into memory.
+     */
+    synchronized void loadDocumentNames() throws IOException {
+        if (packedDocumentNames != null || documentNames != null) {
+            return;
+        }
+        if (PackedDocumentNameReader.isPackedNamesFile(documentNameIndexFilename)) {
+            packedDocumentNames = new PackedDocumentNameReader(documentNameIndexFilename);
+        } else {
+            documentNames = new DocumentNameReader(documentNamesFilename);
+        }
     }
 
     public static StructuredIndexPartReader openIndexPart(String path) throws IOException {
+        return openIndexPart(path, new Parameters());
+    }
+
+    public static StructuredIndexPartReader openIndexPart(String path, Parameters parameters) throws IOException {
         if (!IndexReader.isIndexFile(path)) {
             return null;
         }
-        IndexReader reader = new IndexReader(path);
+        return openIndexPart(path, new IndexReader(path, parameters));
+    }
+
+    static StructuredIndexPartReader openIndexPart(String path, IndexReader reader) throws IOException {
         if (!reader.getManifest().containsKey("readerClass")) {
             throw new IOException("Tried to open an index part at " + path + ", but the " +
                                   "file has no readerClass specified in its manifest. " +
@@ -108,8 +214,10 @@ public class StructuredIndex {
         for (Entry<String, StructuredIndexPartReader> entry : parts.entrySet()) {
             String partName = entry.getKey();
             StructuredIndexPartReader part = entry.getValue();
+            Map<String, NodeType> nodeTypes = part.getNodeTypes();
+            partNodeTypes.put(part, nodeTypes);
 
-            for (String name : part.getNodeTypes().keySet()) {
+            for (String name : nodeTypes.keySet()) {
                 knownIndexOperators.add(name);
 
                 if (!defaultIndexOperators.containsKey(name)) {
@@ -166,7 +274,7 @@ public class StructuredIndex {
         StructuredIndexPartReader part = getIndexPart(node);
         if (part != null) {
             final String operator = node.getOperator();
-            final Map<String, NodeType> nodeTypes = part.getNodeTypes();
+            final Map<String, NodeType> nodeTypes = partNodeTypes.get(part);
             result = nodeTypes.get(operator);
         }
         return result;
@@ -185,14 +293,47 @@ public class StructuredIndex {
             part.close();
         }
         parts.clear();
+        partReaders.clear();
         documentLengths.close();
+        synchronized (this) {
+            if (packedDocumentNames != null) {
+                packedDocumentNames.close();
+                packedDocumentNames = null;
+            }
+        }
     }
 
     public int getLength(int document) {
         return documentLengths.getLength(document);
     }
 
-    public String getDocumentName(int document) {
+    public int getMinimumLength() {
+        return documentLengths.getMinimumLength();
+    }
+
+    public String getDocumentName(int document) throws IOException {
+        loadDocumentNames();
+        if (packedDocumentNames != null) {
+            return packedDocumentNames.get(document);
+        }
         return documentNames.get(document);
     }
+
+    /**
+     * Returns the number of the document with this name, or -1 if there is
+     * no such document.  Indexes without a documentNameIndex file are
+     * searched one name at a time.
+     */
+    public int getDocumentNumber(String name) throws IOException {
+        loadDocumentNames();
+        if (packedDocumentNames != null) {
+            return packedDocumentNames.getDocumentNumber(name);
+        }
+        for (int i = 0; i < documentNames.getDocumentCount(); i++) {
+            if (documentNames.get(i).equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
 }
@@ -8,6 +8,10 @@ import java.util.ArrayList;
 import org.galagosearch.tupleflow.Utility;
 
 /**
+ * Reads the vocabulary of an index file, which holds the first key of each
+ * block along with the file offset of the block.  All the keys are packed
+ * into one byte array, and the offsets into one long array, so a large
+ * vocabulary costs a few arrays instead of one object per block.
  *
  * @author trevor
  */
@@ -17,74 +21,160 @@ public class VocabularyReader {
         public long begin;
         public long length;
     }
-    ArrayList<TermSlot> slots;
+
+    byte[] keyData;
+    int[] keyStarts;
+    long[] blockStarts;
+    int slotCount;
+    long invertedFileLength;
 
     /** Creates a new instance of DocumentNameReader */
     public VocabularyReader(RandomAccessFile input, long invertedFileLength,
                             long vocabularyLength) throws IOException {
-        slots = new ArrayList<TermSlot>();
         read(invertedFileLength, vocabularyLength, input);
     }
 
+    /**
+     * Returns a TermSlot for every block.  These are built on demand,
+     * so this shouldn't be used in performance-critical code.
+     */
     public ArrayList<TermSlot> getSlots() {
+        ArrayList<TermSlot> slots = new ArrayList<TermSlot>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(getSlot(i));
+        }
         return slots;
     }
 
     public void read(long invertedFileLength, long vocabularyLength, RandomAccessFile input) throws IOException {
-        long last = 0;
-        long start = input.getFilePointer();
-
-        while (input.getFilePointer() < start + vocabularyLength) {
-            short length = input.readShort();
-            byte[] data = new byte[length];
-            input.read(data);
-            long offset = input.readLong();
-            TermSlot slot = new TermSlot();
-
-            if (slots.size() > 0) {
-                slots.get(slots.size() - 1).length = offset - last;
+        // Read the whole vocabulary at once, then decode it in memory.
+        byte[] data = new byte[(int) vocabularyLength];
+        input.readFully(data);
+
+        // Each entry takes at least 10 bytes (a short length and a long offset)
+        int maximumCount = data.length / 10;
+        keyData = new byte[data.length];
+        keyStarts = new int[maximumCount + 1];
+        blockStarts = new long[maximumCount];
+        slotCount = 0;
+
+        int position = 0;
+        int keyEnd = 0;
+        while (position < data.length) {
+            int length = ((data[position] & 0xff) << 8) | (data[position + 1] & 0xff);
+            position += 2;
+
+            keyStarts[slotCount] = keyEnd;
+            System.arraycopy(data, position, keyData, keyEnd, length);
+            keyEnd += length;
+            position += length;
+
+            long offset = 0;
+            for (int i = 0; i < 8; i++) {
+                offset = (offset << 8) | (data[position + i] & 0xff);
             }
-            slot.begin = offset;
-            slot.termData = data;
-            slots.add(slot);
+            position += 8;
 
-            last = offset;
+            blockStarts[slotCount] = offset;
+            slotCount++;
         }
 
-        if (slots.size() > 0) {
-            slots.get(slots.size() - 1).length = invertedFileLength - last;
-        }
-        assert invertedFileLength >= last;
+        keyStarts[slotCount] = keyEnd;
+
+        // trim the arrays to fit
+        byte[] trimmedKeys = new byte[keyEnd];
+        System.arraycopy(keyData, 0, trimmedKeys, 0, keyEnd);
+        keyData = trimmedKeys;
+        int[] trimmedStarts = new int[slotCount + 1];
+        System.arraycopy(keyStarts, 0, trimmedStarts, 0, slotCount + 1);
+        keyStarts = trimmedStarts;
+        long[] trimmedBlocks = new long[slotCount];
+        System.arraycopy(blockStarts, 0, trimmedBlocks, 0, slotCount);
+        blockStarts = trimmedBlocks;
+        this.invertedFileLength = invertedFileLength;
+
+        assert slotCount == 0 || invertedFileLength >= blockStarts[slotCount - 1];
     }
 
-    public TermSlot get(byte[] key) {
-        if (slots.size() == 0) {
-            return null;
+    /**
+     * Returns the number of blocks in the vocabulary.
+     */
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Returns the file offset of block i.
+     */
+    public long getBlockStart(int i) {
+        return blockStarts[i];
+    }
+
+    /**
+     * Returns the length of block i in bytes.
+     */
+    public long getBlockLength(int i) {
+        long end = (i + 1 < slotCount) ? blockStarts[i + 1] : invertedFileLength;
+        return end - blockStarts[i];
+    }
+
+    /**
+     * Returns a copy of the first key in block i.
+     */
+    public byte[] getKey(int i) {
+        byte[] key = new byte[keyStarts[i + 1] - keyStarts[i]];
+        System.arraycopy(keyData, keyStarts[i], key, 0, key.length);
+        return key;
+    }
+
+    TermSlot getSlot(int i) {
+        TermSlot slot = new TermSlot();
+        slot.termData = getKey(i);
+        slot.begin = getBlockStart(i);
+        slot.length = getBlockLength(i);
+        return slot;
+    }
+
+    int compareKey(int i, byte[] key) {
+        return Utility.compare(keyData, keyStarts[i], keyStarts[i + 1] - keyStarts[i],
+                               key, 0, key.length);
+    }
+
+    /**
+     * Returns the index of the block that could contain this key: the last
+     * block whose first key is less than or equal to key.  If key comes before
+     * every block, this returns the first block.  Returns -1 if the
+     * vocabulary is empty.
+     */
+    public int findSlot(byte[] key) {
+        if (slotCount == 0) {
+            return -1;
         }
-        int big = slots.size() - 1;
+
         int small = 0;
+        int big = slotCount - 1;
 
-        while (big - small > 1) {
-            int middle = small + (big - small) / 2;
-            byte[] middleKey = slots.get(middle).termData;
+        while (small < big) {
+            int middle = small + (big - small + 1) / 2;
 
-            if (Utility.compare(middleKey, key) <= 0) {
+            if (compareKey(middle, key) <= 0) {
                 small = middle;
             } else {
-                big = middle;
+                big = middle - 1;
             }
         }
 
-        TermSlot one = slots.get(small);
-        TermSlot two = slots.get(big);
+        return small;
+    }
 
-        if (Utility.compare(two.termData, key) <= 0) {
-            return two;
-        } else {
-            return one;
+    public TermSlot get(byte[] key) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
         }
+        return getSlot(slot);
     }
-    
+
     public TermSlot get(String key) {
         return get(Utility.makeBytes(key));
     }
@@ -17,7 +17,11 @@ public class DocumentIndexReader {
     IndexReader reader;
 
     public DocumentIndexReader(String fileName) throws FileNotFoundException, IOException {
-        reader = new IndexReader(fileName);
+        this(fileName, false);
+    }
+
+    public DocumentIndexReader(String fileName, boolean mapped) throws FileNotFoundException, IOException {
+        reader = new IndexReader(fileName, mapped);
     }
 
     public DocumentIndexReader(IndexReader reader) {
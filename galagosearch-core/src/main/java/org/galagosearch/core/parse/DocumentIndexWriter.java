@@ -34,6 +34,9 @@ public class DocumentIndexWriter implements Processor<Document> {
     public DocumentIndexWriter(TupleFlowParameters parameters) throws FileNotFoundException, IOException {
         Parameters p = new Parameters();
         p.add("isCompressed", "true");
+        p.add("blockCodec", parameters.getXML().get("blockCodec", "gzip"));
+        // stores with several corpus files look up names that most of them don't have
+        p.add("bloomFilterRate", parameters.getXML().get("bloomFilterRate", "0.01"));
         writer = new IndexWriter(parameters.getXML().get("filename"), p);
         documentsWritten = parameters.getCounter("Documents Written");
     }
@@ -21,6 +21,9 @@ import org.galagosearch.tupleflow.Parameters;
  */
 public class NodeType {
     private Class<? extends StructuredIterator> nodeClass;
+    // found on first use, since reflection is slow
+    private Constructor constructor;
+    private Class[] inputs;
 
     public NodeType(Class<? extends StructuredIterator> nodeClass) {
         this.nodeClass = nodeClass;
@@ -31,13 +34,14 @@ public class NodeType {
     }
     
     public Class[] getInputs() throws Exception {
-        Constructor constructor = null;
-        try {
-            constructor = getConstructor();
-        } catch(Exception e) {
-            return new Class[0];
+        if (inputs == null) {
+            try {
+                inputs = getConstructor().getParameterTypes();
+            } catch(Exception e) {
+                return new Class[0];
+            }
         }
-        return constructor.getParameterTypes();
+        return inputs;
     }
     
     public Class[] getParameterTypes(int length) throws Exception {
@@ -78,6 +82,13 @@ public class NodeType {
     }
     
     public Constructor getConstructor() throws Exception {
+        if (constructor == null) {
+            constructor = findConstructor();
+        }
+        return constructor;
+    }
+
+    private Constructor findConstructor() throws Exception {
         for (Constructor constructor : nodeClass.getConstructors()) {
             Class[] types = constructor.getParameterTypes();
          
@@ -0,0 +1,30 @@
+// BSD License (http://www.galagosearch.org/license)
+package org.galagosearch.core.retrieval.structured;
+
+/**
+ * An iterator over an inverted list that knows, without reading the
+ * list, how many documents it contains and how many times its term
+ * occurs in the whole collection.  Index readers that store these
+ * numbers in the list header implement this, so that scoring functions
+ * don't have to scan the list at construction time to compute them.
+ *
+ * @author trevor
+ */
+public interface AggregateIterator {
+    /**
+     * Returns the number of documents in this list.
+     */
+    public long documentFrequency();
+
+    /**
+     * Returns the total number of term occurrences in this list.
+     */
+    public long collectionFrequency();
+
+    /**
+     * Returns an upper bound on the count of any single document in this
+     * list.  Some indexes store the exact maximum; others can only give
+     * a bound computed from the other two statistics.
+     */
+    public long maximumCount();
+}
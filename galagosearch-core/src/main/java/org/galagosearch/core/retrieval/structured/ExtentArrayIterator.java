@@ -4,6 +4,10 @@ package org.galagosearch.core.retrieval.structured;
 import org.galagosearch.core.util.ExtentArray;
 
 /**
+ * A cursor over an ExtentArray.  Operators that walk extents for every
+ * document should keep their cursors and call reset for each new
+ * document, and use the currentBegin/currentEnd accessors instead of current,
+ * which allocates.
  *
  * @author trevor
  */
@@ -11,12 +15,49 @@ public class ExtentArrayIterator implements Comparable<ExtentArrayIterator> {
     ExtentArray array;
     int index;
 
+    public ExtentArrayIterator() {
+        this(null);
+    }
+
     public ExtentArrayIterator(ExtentArray array) {
+        reset(array);
+    }
+
+    /**
+     * Points this cursor at the first extent of array.
+     */
+    public void reset(ExtentArray array) {
         this.array = array;
+        this.index = 0;
     }
 
     public Extent current() {
-        return array.getBuffer()[index];
+        Extent extent = new Extent();
+        extent.document = currentDocument();
+        extent.begin = currentBegin();
+        extent.end = currentEnd();
+        extent.weight = array.weight(index);
+        return extent;
+    }
+
+    public int currentDocument() {
+        return array.document(index);
+    }
+
+    public int currentBegin() {
+        return array.begin(index);
+    }
+
+    public int currentEnd() {
+        return array.end(index);
+    }
+
+    public int currentIndex() {
+        return index;
+    }
+
+    public ExtentArray getArray() {
+        return array;
     }
 
     public boolean next() {
@@ -29,11 +70,11 @@ public class ExtentArrayIterator implements Comparable<ExtentArrayIterator> {
     }
 
     public int compareTo(ExtentArrayIterator iterator) {
-        int result = current().document - iterator.current().document;
+        int result = currentDocument() - iterator.currentDocument();
 
         if (result != 0) {
             return result;
         }
-        return current().begin - iterator.current().begin;
+        return currentBegin() - iterator.currentBegin();
     }
 }
@@ -6,11 +6,18 @@ import java.util.ArrayList;
 import org.galagosearch.core.util.ExtentArray;
 
 /**
+ * Base class for operators that only match documents where all of their
+ * children match.  Subclasses see their children in query order in
+ * extentIterators, which matters for operators like #od.  Documents are
+ * found using matchIterators, which holds the same children with the one
+ * expected to match the fewest documents first, so the rarest child drives
+ * the search no matter how the query was written.
  *
  * @author trevor
  */
 public abstract class ExtentConjunctionIterator extends ExtentIterator {
     protected ExtentIterator[] extentIterators;
+    protected ExtentIterator[] matchIterators;
     protected ExtentArray extents;
     protected int document;
     protected boolean done;
@@ -18,6 +25,7 @@ public abstract class ExtentConjunctionIterator extends ExtentIterator {
     public ExtentConjunctionIterator(ExtentIterator[] extIterators) {
         this.done = false;
         this.extentIterators = extIterators;
+        this.matchIterators = MoveIterators.sortByDocumentCount(extIterators);
         this.extents = new ExtentArray();
     }
 
@@ -25,7 +33,7 @@ public abstract class ExtentConjunctionIterator extends ExtentIterator {
 
     public void nextDocument() throws IOException {
         if (!done) {
-            extentIterators[0].nextDocument();
+            matchIterators[0].nextDocument();
             findDocument();
         }
     }
@@ -33,7 +41,7 @@ public abstract class ExtentConjunctionIterator extends ExtentIterator {
     public void findDocument() throws IOException {
         while (!done) {
             // find a document that might have some matches
-            document = MoveIterators.moveAllToSameDocument(extentIterators);
+            document = MoveIterators.moveAllToSameDocument(matchIterators);
 
             // if we're done, quit now
             if (document == Integer.MAX_VALUE) {
@@ -49,10 +57,29 @@ public abstract class ExtentConjunctionIterator extends ExtentIterator {
             if (extents.getPosition() > 0) {
                 break;
             }
-            extentIterators[0].nextDocument();
+            matchIterators[0].nextDocument();
         }
     }
 
+    /**
+     * Skips the rarest child straight to document, then lets findDocument
+     * bring the other children along with skipToDocument, so nested
+     * conjunctions skip instead of stepping through every match.
+     */
+    @Override
+    public boolean skipToDocument(int document) throws IOException {
+        if (done) {
+            return false;
+        }
+        if (this.document >= document) {
+            return this.document == document;
+        }
+
+        matchIterators[0].skipToDocument(document);
+        findDocument();
+        return !done && this.document == document;
+    }
+
     public ExtentArray extents() {
         return extents;
     }
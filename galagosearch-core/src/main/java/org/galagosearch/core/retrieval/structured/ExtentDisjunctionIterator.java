@@ -54,6 +54,35 @@ public abstract class ExtentDisjunctionIterator extends ExtentIterator {
         }
     }
 
+    /**
+     * Skips every child that is behind document, then loads the
+     * extents for the first document at or after it.
+     */
+    @Override
+    public boolean skipToDocument(int document) throws IOException {
+        if (isDone()) {
+            return false;
+        }
+        if (this.document >= document) {
+            return this.document == document;
+        }
+
+        while (iterators.size() > 0 && iterators.peek().document() < document) {
+            ExtentIterator iter = iterators.poll();
+            iter.skipToDocument(document);
+
+            if (!iter.isDone()) {
+                iterators.offer(iter);
+            }
+        }
+
+        if (!isDone()) {
+            extents.reset();
+            loadExtents();
+        }
+        return !isDone() && this.document == document;
+    }
+
     public boolean isDone() {
         return iterators.size() == 0;
     }
@@ -16,6 +16,8 @@ import org.galagosearch.tupleflow.Parameters;
 public class ExtentInsideIterator extends ExtentConjunctionIterator {
     ExtentIterator innerIterator;
     ExtentIterator outerIterator;
+    ExtentArrayIterator inner = new ExtentArrayIterator();
+    ExtentArrayIterator outer = new ExtentArrayIterator();
 
     /**
      * <p>Constructs an #inside instance.  For <tt>#inside(a b)</tt>, this
@@ -48,14 +50,15 @@ public class ExtentInsideIterator extends ExtentConjunctionIterator {
      */
 
     public void loadExtents() {
-        ExtentArrayIterator inner = new ExtentArrayIterator(innerIterator.extents());
-        ExtentArrayIterator outer = new ExtentArrayIterator(outerIterator.extents());
+        inner.reset(innerIterator.extents());
+        outer.reset(outerIterator.extents());
 
         while (!inner.isDone() && !outer.isDone()) {
-            if (outer.current().contains(inner.current())) {
-                extents.add(inner.current());
+            if (outer.currentBegin() <= inner.currentBegin() &&
+                    outer.currentEnd() >= inner.currentEnd()) {
+                extents.add(inner.getArray(), inner.currentIndex());
                 inner.next();
-            } else if (outer.current().end <= inner.current().begin) {
+            } else if (outer.currentEnd() <= inner.currentBegin()) {
                 outer.next();
             } else {
                 inner.next();
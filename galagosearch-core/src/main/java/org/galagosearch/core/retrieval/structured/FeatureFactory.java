@@ -78,7 +78,8 @@ public class FeatureFactory {
         {OrderedWindowIterator.class.getName(), "od"},
         {UnorderedWindowIterator.class.getName(), "unordered"},
         {UnorderedWindowIterator.class.getName(), "uw"},
-        {ScaleIterator.class.getName(), "scale"}
+        {ScaleIterator.class.getName(), "scale"},
+        {SequentialDependenceIterator.class.getName(), "sdm"}
     };
     static String[][] sFeatureLookup = {
         {DirichletScorer.class.getName(), "dirichlet"}
@@ -104,6 +105,8 @@ public class FeatureFactory {
     HashMap<String, OperatorSpec> featureLookup;
     HashMap<String, OperatorSpec> operatorLookup;
     List<TraversalSpec> traversals;
+    // one NodeType per class, so constructors are only looked up once
+    HashMap<String, NodeType> nodeTypes = new HashMap<String, NodeType>();
 
     Parameters parameters;
 
@@ -221,9 +224,12 @@ public class FeatureFactory {
         return operatorType.className;
     }
 
-    @SuppressWarnings("unchecked")
     public Class<StructuredIterator> getClass(Node node) throws Exception {
-        String className = getClassName(node);
+        return getClass(getClassName(node));
+    }
+
+    @SuppressWarnings("unchecked")
+    Class<StructuredIterator> getClass(String className) throws Exception {
         Class c = Class.forName(className);
 
         if (StructuredIterator.class.isAssignableFrom(c)) {
@@ -234,7 +240,16 @@ public class FeatureFactory {
     }
     
     public NodeType getNodeType(Node node) throws Exception {
-        return new NodeType(getClass(node));
+        String className = getClassName(node);
+
+        synchronized (nodeTypes) {
+            NodeType type = nodeTypes.get(className);
+            if (type == null) {
+                type = new NodeType(getClass(className));
+                nodeTypes.put(className, type);
+            }
+            return type;
+        }
     }
 
     boolean isUsableConstructor(
@@ -357,9 +372,33 @@ public class FeatureFactory {
                 parametersCopy.add(statistic, parameters.get(statistic, null));
             }
         }
+        addListStatistics(parametersCopy, childIterators);
         return (StructuredIterator) constructor.newInstance(args);
     }
 
+    /**
+     * If this node has a single child that reads an inverted list with stored
+     * statistics, copies the document frequency, collection frequency and maximum
+     * count of that list into the node parameters.  Scoring functions can then use those
+     * numbers instead of scanning the whole list to compute them.
+     */
+    void addListStatistics(Parameters parameters, ArrayList<StructuredIterator> childIterators) {
+        if (childIterators.size() != 1 || !(childIterators.get(0) instanceof AggregateIterator)) {
+            return;
+        }
+
+        AggregateIterator aggregate = (AggregateIterator) childIterators.get(0);
+        if (!parameters.containsKey("documentFrequency")) {
+            parameters.add("documentFrequency", Long.toString(aggregate.documentFrequency()));
+        }
+        if (!parameters.containsKey("collectionFrequency")) {
+            parameters.add("collectionFrequency", Long.toString(aggregate.collectionFrequency()));
+        }
+        if (!parameters.containsKey("maximumCount")) {
+            parameters.add("maximumCount", Long.toString(aggregate.maximumCount()));
+        }
+    }
+
     public List<String> getTraversalNames() {
         ArrayList<String> result = new ArrayList<String>();
         for (TraversalSpec spec : traversals) {
@@ -11,14 +11,19 @@ import org.galagosearch.tupleflow.Parameters;
  * @author trevor
  */
 public class FilteredCombinationIterator extends ScoreCombinationIterator {
+    // the children with the rarest first, so the match tests can stop early;
+    // scores are still added up in query order
+    ScoreIterator[] matchIterators;
+
     public FilteredCombinationIterator(Parameters parameters, ScoreIterator[] childIterators) {
         super(parameters, childIterators);
+        matchIterators = MoveIterators.sortByDocumentCount(childIterators);
     }
 
     public int nextCandidate() {
         int candidate = 0;
 
-        for (ScoreIterator iterator : iterators) {
+        for (ScoreIterator iterator : matchIterators) {
             if (iterator.isDone()) {
                 return Integer.MAX_VALUE;
             }
@@ -29,7 +34,7 @@ public class FilteredCombinationIterator extends ScoreCombinationIterator {
     }
 
     public boolean hasMatch(int document) {
-        for (ScoreIterator iterator : iterators) {
+        for (ScoreIterator iterator : matchIterators) {
             if (iterator.isDone() || !iterator.hasMatch(document)) {
                 return false;
             }
@@ -39,7 +44,7 @@ public class FilteredCombinationIterator extends ScoreCombinationIterator {
     }
 
     public boolean isDone() {
-        for (ScoreIterator iterator : iterators) {
+        for (ScoreIterator iterator : matchIterators) {
             if (iterator.isDone()) {
                 return true;
             }
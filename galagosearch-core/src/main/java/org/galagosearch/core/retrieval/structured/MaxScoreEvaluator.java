@@ -0,0 +1,224 @@
+// BSD License (http://www.galagosearch.org/license)
+package org.galagosearch.core.retrieval.structured;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import org.galagosearch.core.index.StructuredIndex;
+
+/**
+ * <p>Evaluates a #combine query with the MaxScore pruning strategy.</p>
+ *
+ * <p>Each term gets an upper bound on how much it can add to a document
+ * score.  Once the top k queue is full, the terms with the smallest bounds
+ * are marked non-essential: a document that contains only those terms
+ * can't make it into the queue, so candidates come from the essential terms
+ * only, and the non-essential terms are just moved forward to each candidate.
+ * A candidate is only scored if its bound could beat the lowest score in the
+ * queue.  The results are the same as evaluating every candidate.</p>
+ *
+ * <p>This only works for an UnfilteredCombinationIterator whose children are
+ * ScoringFunctionIterators (possibly scaled by a non-negative weight) that
+ * can bound their scores.</p>
+ *
+ * @author trevor
+ */
+public class MaxScoreEvaluator {
+    StructuredIndex index;
+    UnfilteredCombinationIterator root;
+    ScoreIterator[] iterators;
+    ScoringFunctionIterator[] scorers;
+    double[] weights;
+    double[] gains;
+    double baseScore;
+    int minimumLength;
+
+    // Scores are summed as floats, so leave a little room for rounding.
+    static final double relativeSlack = 1e-4;
+    static final double absoluteSlack = 1e-6;
+
+    public MaxScoreEvaluator(StructuredIndex index, UnfilteredCombinationIterator root) {
+        this.index = index;
+        this.root = root;
+        this.minimumLength = index.getMinimumLength();
+
+        int count = root.iterators.length;
+        ScoreIterator[] children = new ScoreIterator[count];
+        ScoringFunctionIterator[] childScorers = new ScoringFunctionIterator[count];
+        double[] childWeights = new double[count];
+        final double[] childGains = new double[count];
+        Integer[] order = new Integer[count];
+
+        baseScore = 0;
+        for (int i = 0; i < count; i++) {
+            ScoreIterator child = root.iterators[i];
+            children[i] = child;
+            childWeights[i] = 1.0;
+
+            if (child instanceof ScaleIterator) {
+                childWeights[i] = ((ScaleIterator) child).weight;
+                child = ((ScaleIterator) child).iterator;
+            }
+
+            childScorers[i] = (ScoringFunctionIterator) child;
+            double missing = childWeights[i] * childScorers[i].maximumMissingScore(minimumLength);
+            double present = childWeights[i] * childScorers[i].maximumScore(minimumLength);
+            childGains[i] = Math.max(0, present - missing);
+            baseScore += missing;
+            order[i] = i;
+        }
+
+        // terms that can add the least to a score come first
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Double.compare(childGains[a], childGains[b]);
+            }
+        });
+
+        iterators = new ScoreIterator[count];
+        scorers = new ScoringFunctionIterator[count];
+        weights = new double[count];
+        gains = new double[count];
+
+        for (int i = 0; i < count; i++) {
+            iterators[i] = children[order[i]];
+            scorers[i] = childScorers[order[i]];
+            weights[i] = childWeights[order[i]];
+            gains[i] = childGains[order[i]];
+        }
+    }
+
+    /**
+     * Returns true if this iterator tree can be evaluated with a MaxScoreEvaluator.
+     */
+    public static boolean isPrunable(ScoreIterator iterator, int minimumLength) {
+        if (!(iterator instanceof UnfilteredCombinationIterator)) {
+            return false;
+        }
+
+        UnfilteredCombinationIterator combination = (UnfilteredCombinationIterator) iterator;
+
+        for (ScoreIterator child : combination.iterators) {
+            if (child instanceof ScaleIterator) {
+                ScaleIterator scale = (ScaleIterator) child;
+                if (scale.weight < 0) {
+                    return false;
+                }
+                child = scale.iterator;
+            }
+
+            if (!(child instanceof ScoringFunctionIterator)) {
+                return false;
+            }
+
+            ScoringFunctionIterator scorer = (ScoringFunctionIterator) child;
+            double present = scorer.maximumScore(minimumLength);
+            double missing = scorer.maximumMissingScore(minimumLength);
+
+            if (Double.isInfinite(present) || Double.isNaN(present) ||
+                    Double.isInfinite(missing) || Double.isNaN(missing)) {
+                return false;
+            }
+        }
+
+        return combination.iterators.length > 0;
+    }
+
+    /**
+     * Returns the number of leading terms that can't lift a document above the
+     * threshold on their own.
+     */
+    int countNonEssential(double threshold) {
+        double bound = baseScore;
+        int count = 0;
+
+        while (count < gains.length && bound + gains[count] <= threshold) {
+            bound += gains[count];
+            count++;
+        }
+
+        return count;
+    }
+
+    double slack(double threshold) {
+        return relativeSlack * Math.abs(threshold) + absoluteSlack;
+    }
+
+    /**
+     * Scores every document that could make it into collector, and adds
+     * it to the collector.
+     */
+    public void evaluate(TopDocumentCollector collector) throws IOException {
+        evaluate(collector, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Like evaluate(collector), but only scores documents from start up to,
+     * but not including, end.
+     */
+    public void evaluate(TopDocumentCollector collector, int start, int end) throws IOException {
+        double threshold = Double.NEGATIVE_INFINITY;
+        int nonEssential = 0;
+
+        if (start > 0) {
+            root.moveTo(start);
+        }
+
+        while (true) {
+            int document = Integer.MAX_VALUE;
+
+            for (int i = nonEssential; i < iterators.length; i++) {
+                if (!iterators[i].isDone()) {
+                    document = Math.min(document, iterators[i].nextCandidate());
+                }
+            }
+
+            if (document == Integer.MAX_VALUE || document >= end) {
+                break;
+            }
+
+            int length = index.getLength(document);
+            double bound = 0;
+
+            for (int i = nonEssential; i < iterators.length; i++) {
+                bound += boundTerm(i, document, length);
+            }
+            for (int i = 0; i < nonEssential; i++) {
+                bound += weights[i] * scorers[i].maximumScore(length);
+            }
+
+            if (bound > threshold) {
+                // tighten the bound using the non-essential terms
+                bound = 0;
+                for (int i = 0; i < iterators.length; i++) {
+                    if (i < nonEssential) {
+                        iterators[i].moveTo(document);
+                    }
+                    bound += boundTerm(i, document, length);
+                }
+            }
+
+            if (bound > threshold) {
+                double score = root.score(document, length);
+
+                if (collector.add(document, score) && collector.isFull()) {
+                    double lowest = collector.getThreshold();
+                    threshold = lowest - slack(lowest);
+                    nonEssential = countNonEssential(threshold);
+                }
+            }
+
+            for (int i = nonEssential; i < iterators.length; i++) {
+                iterators[i].movePast(document);
+            }
+        }
+    }
+
+    double boundTerm(int i, int document, int length) {
+        if (iterators[i].hasMatch(document)) {
+            return weights[i] * scorers[i].maximumScore(length);
+        } else {
+            return weights[i] * scorers[i].maximumMissingScore(length);
+        }
+    }
+}
@@ -2,6 +2,8 @@
 package org.galagosearch.core.retrieval.structured;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
 
 /**
  *
@@ -13,7 +15,7 @@ public class MoveIterators {
      * stop at documents where all of the iterators have a match.
      *
      * This code assumes that the most selective iterator (the one with the fewest document
-     * matches) is the first one.
+     * matches) is the first one; sortByDocumentCount puts them in that order.
      *
      * @return The document number that the iterators are now pointing to, or Integer.MAX_VALUE
      *         if one of the iterators is now done.
@@ -111,4 +113,83 @@ public class MoveIterators {
 
         return minimumDocument;
     }
+
+    /**
+     * Estimates the number of documents an iterator will stop on, using the
+     * list statistics of any index iterators under it.  A conjunction can't
+     * match more documents than its rarest child, and a disjunction can't
+     * match more than all of its children together.  Returns Long.MAX_VALUE
+     * when nothing is known.
+     */
+    public static long estimateDocumentCount(StructuredIterator iterator) {
+        if (iterator instanceof AggregateIterator) {
+            return ((AggregateIterator) iterator).documentFrequency();
+        } else if (iterator instanceof ExtentConjunctionIterator) {
+            return minimumEstimate(((ExtentConjunctionIterator) iterator).extentIterators);
+        } else if (iterator instanceof FilteredCombinationIterator) {
+            return minimumEstimate(((FilteredCombinationIterator) iterator).iterators);
+        } else if (iterator instanceof ExtentDisjunctionIterator) {
+            return sumEstimate(((ExtentDisjunctionIterator) iterator).original);
+        } else if (iterator instanceof UnfilteredCombinationIterator) {
+            return sumEstimate(((UnfilteredCombinationIterator) iterator).iterators);
+        } else if (iterator instanceof ScoringFunctionIterator) {
+            return estimateDocumentCount(((ScoringFunctionIterator) iterator).iterator);
+        } else if (iterator instanceof ScaleIterator) {
+            return estimateDocumentCount(((ScaleIterator) iterator).iterator);
+        } else if (iterator instanceof NullExtentIterator) {
+            return 0;
+        }
+
+        return Long.MAX_VALUE;
+    }
+
+    private static long minimumEstimate(StructuredIterator[] iterators) {
+        long minimum = Long.MAX_VALUE;
+        for (StructuredIterator iterator : iterators) {
+            minimum = Math.min(minimum, estimateDocumentCount(iterator));
+        }
+        return minimum;
+    }
+
+    private static long sumEstimate(StructuredIterator[] iterators) {
+        long total = 0;
+        for (StructuredIterator iterator : iterators) {
+            long estimate = estimateDocumentCount(iterator);
+            if (estimate == Long.MAX_VALUE) {
+                return Long.MAX_VALUE;
+            }
+            total += estimate;
+        }
+        return total;
+    }
+
+    /**
+     * Returns a copy of iterators with the ones expected to match the
+     * fewest documents first, which is the order moveAllToSameDocument
+     * wants.  Iterators with the same estimate stay in their original order.
+     */
+    public static <T extends StructuredIterator> T[] sortByDocumentCount(T[] iterators) {
+        T[] sorted = iterators.clone();
+        final long[] estimates = new long[iterators.length];
+        final Integer[] order = new Integer[iterators.length];
+
+        for (int i = 0; i < iterators.length; i++) {
+            estimates[i] = estimateDocumentCount(iterators[i]);
+            order[i] = i;
+        }
+
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer one, Integer two) {
+                if (estimates[one] != estimates[two]) {
+                    return estimates[one] < estimates[two] ? -1 : 1;
+                }
+                return one - two;
+            }
+        });
+
+        for (int i = 0; i < order.length; i++) {
+            sorted[i] = iterators[order[i]];
+        }
+        return sorted;
+    }
 }
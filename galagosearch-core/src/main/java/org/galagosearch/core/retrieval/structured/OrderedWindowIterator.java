@@ -2,9 +2,8 @@
 package org.galagosearch.core.retrieval.structured;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import org.galagosearch.core.util.ExtentArray;
 import org.galagosearch.tupleflow.Parameters;
-import org.galagosearch.tupleflow.Utility;
 
 /**
  *
@@ -12,34 +11,45 @@ import org.galagosearch.tupleflow.Utility;
  */
 public class OrderedWindowIterator extends ExtentConjunctionIterator {
     int width;
+    ExtentArrayIterator[] iterators;
 
     /** Creates a new instance of UnorderedWindowIterator */
     public OrderedWindowIterator(Parameters parameters, ExtentIterator[] iterators) throws IOException {
         super(iterators);
         this.width = (int) parameters.getAsDefault("width", -1);
+        this.iterators = new ExtentArrayIterator[iterators.length];
+        for (int i = 0; i < iterators.length; i++) {
+            this.iterators[i] = new ExtentArrayIterator();
+        }
         findDocument();
     }
 
     public void loadExtents() {
-        ExtentArrayIterator[] iterators;
-
-        iterators = new ExtentArrayIterator[extentIterators.length];
         for (int i = 0; i < extentIterators.length; i++) {
-            iterators[i] = new ExtentArrayIterator(
-                    extentIterators[i].extents());
+            iterators[i].reset(extentIterators[i].extents());
         }
+        findWindows(iterators, width, document, extents);
+    }
+
+    /**
+     * Adds every ordered window of the given width to output.  Each
+     * iterator must be positioned at the first extent of one term of
+     * the window in document, in query order.
+     */
+    static void findWindows(ExtentArrayIterator[] iterators, int width,
+                            int document, ExtentArray output) {
         boolean notDone = true;
         while (notDone) {
             // find the start of the first word
             boolean invalid = false;
-            int begin = iterators[0].current().begin;
+            int begin = iterators[0].currentBegin();
 
             // loop over all the rest of the words
             for (int i = 1; i < iterators.length; i++) {
-                int end = iterators[i - 1].current().end;
+                int end = iterators[i - 1].currentEnd();
 
                 // try to move this iterator so that it's past the end of the previous word
-                while (end > iterators[i].current().begin) {
+                while (end > iterators[i].currentBegin()) {
                     notDone = iterators[i].next();
 
                     // if there are no more occurrences of this word,
@@ -49,17 +59,17 @@ public class OrderedWindowIterator extends ExtentConjunctionIterator {
                     }
                 }
 
-                if (iterators[i].current().begin - end >= width) {
+                if (iterators[i].currentBegin() - end >= width) {
                     invalid = true;
                     break;
                 }
             }
 
-            int end = iterators[iterators.length - 1].current().end;
+            int end = iterators[iterators.length - 1].currentEnd();
 
             // if it's a match, record it
             if (!invalid) {
-                extents.add(document, begin, end);
+                output.add(document, begin, end);
             }
             notDone = iterators[0].next();
         }
@@ -0,0 +1,103 @@
+// BSD License (http://www.galagosearch.org/license)
+package org.galagosearch.core.retrieval.structured;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.galagosearch.core.retrieval.ScoredDocument;
+
+/**
+ * <p>An LRU cache of query results, keyed by the text of the transformed query
+ * tree.  Results are stored as parallel int and double arrays.</p>
+ *
+ * <p>Every query that goes through the cache is evaluated to at least
+ * <tt>depth</tt> documents, so asking for the next page of a query that was
+ * just run is a hit.  Requests for more than <tt>depth</tt> documents aren't
+ * cached.  A cache belongs to one open index; the retrieval that owns it clears
+ * it when the index is closed.</p>
+ *
+ * @author trevor
+ */
+public class ResultCache {
+    private static class Entry {
+        int[] documents;
+        double[] scores;
+    }
+
+    LinkedHashMap<String, Entry> entries;
+    int depth;
+    long hits;
+    long misses;
+
+    public ResultCache(final int capacity, int depth) {
+        this.depth = depth;
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the number of documents to evaluate for a request of the given
+     * size, or 0 if a request that large shouldn't be cached.
+     */
+    public int getEvaluationDepth(int requested) {
+        if (requested > depth) {
+            return 0;
+        }
+        return depth;
+    }
+
+    /**
+     * Returns the top requested documents for this query, or null if
+     * they aren't in the cache.
+     */
+    public synchronized ScoredDocument[] get(String key, int requested) {
+        Entry entry = entries.get(key);
+
+        if (entry == null || requested > depth) {
+            misses++;
+            return null;
+        }
+
+        hits++;
+        int count = Math.min(requested, entry.documents.length);
+        ScoredDocument[] results = new ScoredDocument[count];
+        for (int i = 0; i < count; i++) {
+            results[i] = new ScoredDocument(entry.documents[i], entry.scores[i]);
+        }
+        return results;
+    }
+
+    /**
+     * Stores the results of evaluating a query to getEvaluationDepth documents.
+     */
+    public synchronized void put(String key, ScoredDocument[] results) {
+        Entry entry = new Entry();
+        entry.documents = new int[results.length];
+        entry.scores = new double[results.length];
+
+        for (int i = 0; i < results.length; i++) {
+            entry.documents[i] = results[i].document;
+            entry.scores[i] = results[i].score;
+        }
+        entries.put(key, entry);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
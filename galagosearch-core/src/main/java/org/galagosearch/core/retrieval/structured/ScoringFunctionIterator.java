@@ -17,6 +17,23 @@ public abstract class ScoringFunctionIterator implements ScoreIterator {
 
     public abstract double scoreCount(int count, int length);
 
+    /**
+     * Returns an upper bound on the score of any document that contains
+     * this term and is at least <tt>length</tt> terms long.  Scorers that
+     * can't bound their scores return positive infinity.
+     */
+    public double maximumScore(int length) {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns an upper bound on the score of any document that doesn't
+     * contain this term and is at least <tt>length</tt> terms long.
+     */
+    public double maximumMissingScore(int length) {
+        return Double.POSITIVE_INFINITY;
+    }
+
     public double score(int document, int length) {
         int count = 0;
 
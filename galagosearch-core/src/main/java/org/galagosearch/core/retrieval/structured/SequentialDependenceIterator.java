@@ -0,0 +1,225 @@
+// BSD License (http://www.galagosearch.org/license)
+package org.galagosearch.core.retrieval.structured;
+
+import java.io.IOException;
+import org.galagosearch.core.scoring.DirichletScorer;
+import org.galagosearch.core.util.ExtentArray;
+import org.galagosearch.tupleflow.Parameters;
+
+/**
+ * <p>Scores documents with the sequential dependence model.  #sdm(a b c) gives
+ * the same scores as</p>
+ *
+ * <pre>
+ * #combine( #scale:weight=0.85( #combine( a b c ) )
+ *           #scale:weight=0.10( #combine( #od:1( a b ) #od:1( b c ) ) )
+ *           #scale:weight=0.05( #combine( #uw:8( a b ) #uw:8( b c ) ) ) )
+ * </pre>
+ *
+ * <p>where every term and window is scored with the Dirichlet scorer.  The
+ * expanded query reads each list once per mention, and each window finds
+ * its documents and matches its extents on its own.  This operator reads
+ * every list once, and computes all the term and window counts for a
+ * document from the same extents.  The collection frequencies of the windows
+ * are computed in one pass over the lists when the operator is created.</p>
+ *
+ * <p>The weights, the window widths and mu can be changed with the
+ * unigramWeight, orderedWeight, unorderedWeight, orderedWidth,
+ * unorderedWidth and mu parameters.</p>
+ *
+ * @author trevor
+ */
+@RequiredStatistics(statistics = {"collectionLength"})
+public class SequentialDependenceIterator implements ScoreIterator {
+    ExtentIterator[] terms;
+    double unigramWeight;
+    double orderedWeight;
+    double unorderedWeight;
+    int orderedWidth;
+    int unorderedWidth;
+    double mu;
+
+    double[] termBackgrounds;
+    double[] orderedBackgrounds;
+    double[] unorderedBackgrounds;
+
+    // reused while scoring each document
+    boolean[] present;
+    ExtentArrayIterator[] pair;
+    ExtentArray windows;
+
+    public SequentialDependenceIterator(Parameters parameters, ExtentIterator[] terms) throws IOException {
+        this.terms = terms;
+        unigramWeight = parameters.get("unigramWeight", 0.85);
+        orderedWeight = parameters.get("orderedWeight", 0.10);
+        unorderedWeight = parameters.get("unorderedWeight", 0.05);
+        orderedWidth = (int) parameters.get("orderedWidth", 1);
+        unorderedWidth = (int) parameters.get("unorderedWidth", 8);
+        mu = parameters.get("mu", 1500);
+
+        present = new boolean[terms.length];
+        pair = new ExtentArrayIterator[] { new ExtentArrayIterator(), new ExtentArrayIterator() };
+        windows = new ExtentArray();
+
+        long collectionLength = parameters.get("collectionLength", (long) 0);
+        computeBackgrounds(collectionLength);
+    }
+
+    /**
+     * Finds the collection probability of every term and window.  Terms
+     * that read lists with stored statistics don't need a scan, but the
+     * windows always do; all of them are counted in one pass over the lists.
+     */
+    private void computeBackgrounds(long collectionLength) throws IOException {
+        int pairs = Math.max(0, terms.length - 1);
+        long[] termCounts = new long[terms.length];
+        long[] orderedCounts = new long[pairs];
+        long[] unorderedCounts = new long[pairs];
+        boolean scan = pairs > 0;
+
+        for (int i = 0; i < terms.length; i++) {
+            if (terms[i] instanceof AggregateIterator) {
+                termCounts[i] = ((AggregateIterator) terms[i]).collectionFrequency();
+            } else {
+                scan = true;
+            }
+        }
+
+        if (scan) {
+            while (!isDone()) {
+                int document = nextCandidate();
+                findPresentTerms(document);
+
+                for (int i = 0; i < terms.length; i++) {
+                    if (present[i] && !(terms[i] instanceof AggregateIterator)) {
+                        termCounts[i] += terms[i].count();
+                    }
+                }
+                for (int i = 0; i < pairs; i++) {
+                    if (present[i] && present[i + 1]) {
+                        orderedCounts[i] += countOrdered(i, document);
+                        unorderedCounts[i] += countUnordered(i, document);
+                    }
+                }
+
+                movePast(document);
+            }
+            reset();
+        }
+
+        termBackgrounds = new double[terms.length];
+        orderedBackgrounds = new double[pairs];
+        unorderedBackgrounds = new double[pairs];
+
+        for (int i = 0; i < terms.length; i++) {
+            termBackgrounds[i] = (double) termCounts[i] / (double) collectionLength;
+        }
+        for (int i = 0; i < pairs; i++) {
+            orderedBackgrounds[i] = (double) orderedCounts[i] / (double) collectionLength;
+            unorderedBackgrounds[i] = (double) unorderedCounts[i] / (double) collectionLength;
+        }
+    }
+
+    private void findPresentTerms(int document) {
+        for (int i = 0; i < terms.length; i++) {
+            present[i] = !terms[i].isDone() && terms[i].document() == document;
+        }
+    }
+
+    private int countOrdered(int first, int document) {
+        pair[0].reset(terms[first].extents());
+        pair[1].reset(terms[first + 1].extents());
+        windows.reset();
+        OrderedWindowIterator.findWindows(pair, orderedWidth, document, windows);
+        return windows.getPosition();
+    }
+
+    private int countUnordered(int first, int document) {
+        pair[0].reset(terms[first].extents());
+        pair[1].reset(terms[first + 1].extents());
+        windows.reset();
+        UnorderedWindowIterator.findWindows(pair, unorderedWidth, false, document, windows);
+        return windows.getPosition();
+    }
+
+    public double score(int document, int length) {
+        findPresentTerms(document);
+        double unigrams = 0;
+        double ordered = 0;
+        double unordered = 0;
+
+        for (int i = 0; i < terms.length; i++) {
+            int count = present[i] ? terms[i].count() : 0;
+            unigrams += DirichletScorer.score(count, length, mu, termBackgrounds[i]);
+        }
+
+        for (int i = 0; i < terms.length - 1; i++) {
+            int orderedCount = 0;
+            int unorderedCount = 0;
+
+            if (present[i] && present[i + 1]) {
+                orderedCount = countOrdered(i, document);
+                unorderedCount = countUnordered(i, document);
+            }
+
+            ordered += DirichletScorer.score(orderedCount, length, mu, orderedBackgrounds[i]);
+            unordered += DirichletScorer.score(unorderedCount, length, mu, unorderedBackgrounds[i]);
+        }
+
+        return unigramWeight * unigrams + orderedWeight * ordered + unorderedWeight * unordered;
+    }
+
+    public int nextCandidate() {
+        int candidate = Integer.MAX_VALUE;
+
+        for (ExtentIterator term : terms) {
+            if (!term.isDone()) {
+                candidate = Math.min(candidate, term.document());
+            }
+        }
+
+        return candidate;
+    }
+
+    public boolean hasMatch(int document) {
+        for (ExtentIterator term : terms) {
+            if (!term.isDone() && term.document() == document) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public void moveTo(int document) throws IOException {
+        for (ExtentIterator term : terms) {
+            if (!term.isDone()) {
+                term.skipToDocument(document);
+            }
+        }
+    }
+
+    public void movePast(int document) throws IOException {
+        for (ExtentIterator term : terms) {
+            if (!term.isDone() && term.document() <= document) {
+                term.skipToDocument(document + 1);
+            }
+        }
+    }
+
+    public boolean isDone() {
+        for (ExtentIterator term : terms) {
+            if (!term.isDone()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public void reset() throws IOException {
+        for (ExtentIterator term : terms) {
+            term.reset();
+        }
+    }
+}
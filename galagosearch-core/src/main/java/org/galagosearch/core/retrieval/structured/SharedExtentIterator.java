@@ -0,0 +1,292 @@
+// BSD License (http://www.galagosearch.org/license)
+package org.galagosearch.core.retrieval.structured;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import org.galagosearch.core.index.StructuredIndex;
+import org.galagosearch.core.retrieval.query.Node;
+import org.galagosearch.core.util.ArraySearch;
+import org.galagosearch.core.util.ExtentArray;
+
+/**
+ * <p>Lets several parts of a query read the same inverted list while
+ * reading and decoding it only once.  Each consumer gets its own View,
+ * which behaves like an ordinary extent iterator.  The postings the views
+ * have read are kept in a buffer until the slowest view has moved past them.</p>
+ *
+ * <p>To keep the buffer small, a view that gets more than MAXIMUM_LAG
+ * postings ahead of the slowest view stops using the buffer and reads
+ * the list on its own instead.  A view that is reset after the start of
+ * the list has left the buffer does the same.  In the common case, where
+ * a scoring function scans a list once at construction time and the views
+ * then move through the list together, the list is decoded once for the
+ * scan and once for evaluation.</p>
+ *
+ * @author trevor
+ */
+public class SharedExtentIterator {
+    static final int MAXIMUM_LAG = 4096;
+
+    StructuredIndex index;
+    Node node;
+    ExtentIterator source;
+    AggregateIterator statistics;
+    ArrayList<View> views = new ArrayList<View>();
+
+    // the buffer holds postings first through first+size-1 of the list
+    int first;
+    int size;
+    int[] documents = new int[16];
+    int[] counts = new int[16];
+    int[] extentStarts = new int[17];
+    int[] begins = new int[64];
+    int[] ends = new int[64];
+
+    /**
+     * Shares source, which must be an iterator for node that implements
+     * AggregateIterator and hasn't been moved yet.  Views that have to
+     * read the list on their own get a new iterator from index.
+     */
+    public SharedExtentIterator(StructuredIndex index, Node node, ExtentIterator source) {
+        this.index = index;
+        this.node = node;
+        this.source = source;
+        this.statistics = (AggregateIterator) source;
+    }
+
+    /**
+     * Returns a new view of the list, positioned at its first document.
+     */
+    public View newView() throws IOException {
+        View view = new View();
+        views.add(view);
+        view.reset();
+        return view;
+    }
+
+    ExtentIterator open() throws IOException {
+        return (ExtentIterator) index.getIterator(node);
+    }
+
+    /**
+     * Reads postings from the source until posting number target is in the
+     * buffer, or the list ends.  Returns false if the buffer is full of
+     * postings that some view still needs; the view asking should then read
+     * the list on its own.
+     */
+    boolean fill(int target) throws IOException {
+        while (target >= first + size && !source.isDone()) {
+            if (size == documents.length && !makeRoom()) {
+                return false;
+            }
+            append();
+        }
+        return true;
+    }
+
+    /**
+     * Drops the postings every view has moved past, and grows the buffer
+     * if that isn't enough.
+     */
+    private boolean makeRoom() {
+        int slowest = first + size;
+        for (View view : views) {
+            if (view.own == null) {
+                slowest = Math.min(slowest, view.index);
+            }
+        }
+
+        int drop = slowest - first;
+        if (drop > 0) {
+            int extentDrop = extentStarts[drop];
+            int extentCount = extentStarts[size] - extentDrop;
+            System.arraycopy(documents, drop, documents, 0, size - drop);
+            System.arraycopy(counts, drop, counts, 0, size - drop);
+            System.arraycopy(begins, extentDrop, begins, 0, extentCount);
+            System.arraycopy(ends, extentDrop, ends, 0, extentCount);
+            for (int i = drop; i <= size; i++) {
+                extentStarts[i - drop] = extentStarts[i] - extentDrop;
+            }
+            first += drop;
+            size -= drop;
+        }
+
+        if (size < documents.length) {
+            return true;
+        }
+        if (documents.length >= MAXIMUM_LAG) {
+            return false;
+        }
+
+        int capacity = documents.length * 2;
+        documents = copy(documents, capacity, size);
+        counts = copy(counts, capacity, size);
+        extentStarts = copy(extentStarts, capacity + 1, size + 1);
+        return true;
+    }
+
+    private static int[] copy(int[] array, int capacity, int length) {
+        int[] result = new int[capacity];
+        System.arraycopy(array, 0, result, 0, length);
+        return result;
+    }
+
+    private void append() throws IOException {
+        ExtentArray extents = source.extents();
+        int start = extentStarts[size];
+        int length = extents.getPosition();
+
+        if (begins.length < start + length) {
+            int capacity = Math.max(start + length, begins.length * 2);
+            begins = copy(begins, capacity, start);
+            ends = copy(ends, capacity, start);
+        }
+        for (int i = 0; i < length; i++) {
+            begins[start + i] = extents.begin(i);
+            ends[start + i] = extents.end(i);
+        }
+
+        documents[size] = source.document();
+        counts[size] = source.count();
+        extentStarts[size + 1] = start + length;
+        size++;
+        source.nextDocument();
+    }
+
+    /**
+     * One consumer's position in the shared list.
+     */
+    public class View extends ExtentIterator implements AggregateIterator {
+        // the posting this view is on, counted from the start of the list
+        int index;
+        // the iterator this view reads from once it has left the buffer
+        ExtentIterator own;
+        ExtentArray extents = new ExtentArray();
+        boolean extentsLoaded;
+
+        private void leaveBuffer(int target) throws IOException {
+            if (own == null) {
+                own = open();
+            } else {
+                own.reset();
+            }
+            own.skipToDocument(target);
+        }
+
+        public void reset() throws IOException {
+            extentsLoaded = false;
+
+            if (first == 0) {
+                own = null;
+                index = 0;
+                fill(0);
+            } else {
+                leaveBuffer(0);
+            }
+        }
+
+        public void nextDocument() throws IOException {
+            if (own != null) {
+                own.nextDocument();
+                return;
+            }
+            if (isDone()) {
+                return;
+            }
+
+            int previous = document();
+            index++;
+            extentsLoaded = false;
+            if (!fill(index)) {
+                leaveBuffer(previous + 1);
+            }
+        }
+
+        @Override
+        public boolean skipToDocument(int target) throws IOException {
+            if (own != null) {
+                return own.skipToDocument(target);
+            }
+            if (isDone()) {
+                return false;
+            }
+            if (target <= document()) {
+                return target == document();
+            }
+
+            extentsLoaded = false;
+            while (true) {
+                int i = ArraySearch.gallop(documents, index - first, size, target);
+                index = first + i;
+                if (i < size) {
+                    break;
+                }
+                if (!fill(index)) {
+                    leaveBuffer(target);
+                    return !own.isDone() && own.document() == target;
+                }
+                if (index >= first + size) {
+                    return false;
+                }
+            }
+
+            return documents[index - first] == target;
+        }
+
+        public boolean isDone() {
+            if (own != null) {
+                return own.isDone();
+            }
+            return index >= first + size;
+        }
+
+        public int document() {
+            if (own != null) {
+                return own.document();
+            }
+            if (isDone()) {
+                return Integer.MAX_VALUE;
+            }
+            return documents[index - first];
+        }
+
+        public int count() {
+            if (own != null) {
+                return own.count();
+            }
+            if (isDone()) {
+                return 0;
+            }
+            return counts[index - first];
+        }
+
+        public ExtentArray extents() {
+            if (own != null) {
+                return own.extents();
+            }
+            if (!extentsLoaded) {
+                extents.reset();
+                if (!isDone()) {
+                    int i = index - first;
+                    for (int j = extentStarts[i]; j < extentStarts[i + 1]; j++) {
+                        extents.add(documents[i], begins[j], ends[j]);
+                    }
+                }
+                extentsLoaded = true;
+            }
+            return extents;
+        }
+
+        public long documentFrequency() {
+            return statistics.documentFrequency();
+        }
+
+        public long collectionFrequency() {
+            return statistics.collectionFrequency();
+        }
+
+        public long maximumCount() {
+            return statistics.maximumCount();
+        }
+    }
+}
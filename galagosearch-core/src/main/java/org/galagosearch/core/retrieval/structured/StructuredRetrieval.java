@@ -5,8 +5,16 @@ package org.galagosearch.core.retrieval.structured;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import org.galagosearch.core.index.StructuredIndex;
 import org.galagosearch.core.retrieval.query.Node;
 import org.galagosearch.core.retrieval.query.StructuredQuery;
@@ -17,15 +25,45 @@ import org.galagosearch.core.retrieval.query.Traversal;
 import org.galagosearch.tupleflow.Parameters;
 
 /**
+ * <p>Evaluates structured queries against a StructuredIndex.</p>
+ *
+ * <p>If the queryThreads parameter is more than 1, each query is split
+ * into that many ranges of document numbers.  Each range is scored by
+ * its own copy of the iterator tree on a thread pool, and the top
+ * documents of every range are merged at the end.  The results are the
+ * same as running the query on one thread.  An application that wants
+ * to share one pool between several retrievals can pass it to setExecutor.</p>
+ *
+ * <p>If resultCacheSize is set, the results of that many recent queries are
+ * kept in a ResultCache.  Each cached query is evaluated to resultCacheDepth
+ * documents (100 by default), so later pages of the same query come from the cache.</p>
  *
  * @author trevor
  */
 public class StructuredRetrieval extends Retrieval {
+    // ranges smaller than this aren't worth a thread
+    static final int MINIMUM_RANGE_LENGTH = 1024;
+
     StructuredIndex index;
     FeatureFactory featureFactory;
+    boolean pruning;
+    boolean shareIterators;
+    int queryThreads;
+    ExecutorService executor;
+    boolean ownsExecutor;
+    ResultCache resultCache;
 
     public StructuredRetrieval(StructuredIndex index, Parameters factoryParameters) {
         this.index = index;
+        pruning = factoryParameters.get("pruning", false);
+        shareIterators = factoryParameters.get("shareIterators", true);
+        queryThreads = (int) factoryParameters.get("queryThreads", 1);
+
+        int resultCacheSize = (int) factoryParameters.get("resultCacheSize", 0);
+        if (resultCacheSize > 0) {
+            int resultCacheDepth = (int) factoryParameters.get("resultCacheDepth", 100);
+            resultCache = new ResultCache(resultCacheSize, resultCacheDepth);
+        }
         Parameters featureParameters = factoryParameters.clone();
         featureParameters.add("collectionLength", Long.toString(index.getCollectionLength()));
         featureParameters.add("documentCount", Long.toString(index.getDocumentCount()));
@@ -34,13 +72,21 @@ public class StructuredRetrieval extends Retrieval {
 
     public StructuredRetrieval(String filename, Parameters parameters)
             throws FileNotFoundException, IOException {
-        this(new StructuredIndex(filename), parameters);
+        this(new StructuredIndex(filename, parameters), parameters);
     }
 
     public StructuredIndex getIndex() {
         return index;
     }
 
+    /**
+     * Returns the result cache, or null if the resultCacheSize parameter
+     * wasn't set.
+     */
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
     public ScoredDocument[] getArrayResults(PriorityQueue<ScoredDocument> scores) {
         ScoredDocument[] results = new ScoredDocument[scores.size()];
 
@@ -59,11 +105,65 @@ public class StructuredRetrieval extends Retrieval {
         return nodeType;
     }
     
+    /**
+     * Builds the iterator tree for a query.  Index nodes that appear more
+     * than once in the query (a term used both alone and in a window, for
+     * instance) share one SharedExtentIterator, so their list is only
+     * read once.  This can be turned off with the shareIterators parameter.
+     */
     public StructuredIterator createIterator(Node node) throws Exception {
+        HashMap<String, SharedExtentIterator> shared = new HashMap<String, SharedExtentIterator>();
+        if (shareIterators) {
+            findRepeatedIndexNodes(node, new HashSet<String>(), shared);
+        }
+        return createIterator(node, shared);
+    }
+
+    /**
+     * Adds a key for every index node that appears more than once under
+     * node to repeated.  The iterators themselves are opened later.
+     */
+    private void findRepeatedIndexNodes(Node node, HashSet<String> seen,
+                                        HashMap<String, SharedExtentIterator> repeated) throws Exception {
+        if (index.getNodeType(node) != null) {
+            String key = node.toString();
+            if (!seen.add(key)) {
+                repeated.put(key, null);
+            }
+            return;
+        }
+
+        for (Node internalNode : node.getInternalNodes()) {
+            findRepeatedIndexNodes(internalNode, seen, repeated);
+        }
+    }
+
+    private StructuredIterator createIterator(Node node,
+                                              HashMap<String, SharedExtentIterator> shared) throws Exception {
+        // most queries repeat nothing, and then there's no need to print every subtree
+        String key = shared.isEmpty() ? null : node.toString();
+        if (key != null && shared.containsKey(key)) {
+            SharedExtentIterator list = shared.get(key);
+            if (list != null) {
+                return list.newView();
+            }
+
+            StructuredIterator iterator = index.getIterator(node);
+            if (iterator instanceof ExtentIterator && iterator instanceof AggregateIterator) {
+                list = new SharedExtentIterator(index, node, (ExtentIterator) iterator);
+                shared.put(key, list);
+                return list.newView();
+            }
+
+            // this list can't be shared, so every copy gets its own iterator
+            shared.remove(key);
+            return iterator;
+        }
+
         ArrayList<StructuredIterator> internalIterators = new ArrayList<StructuredIterator>();
 
         for (Node internalNode : node.getInternalNodes()) {
-            StructuredIterator internalIterator = createIterator(internalNode);
+            StructuredIterator internalIterator = createIterator(internalNode, shared);
             internalIterators.add(internalIterator);
         }
         
@@ -83,6 +183,32 @@ public class StructuredRetrieval extends Retrieval {
         return queryTree;
     }
 
+    /**
+     * Sets the thread pool used to evaluate the ranges of a query.
+     * The pool isn't shut down when this retrieval is closed.
+     */
+    public synchronized void setExecutor(ExecutorService executor) {
+        if (ownsExecutor) {
+            this.executor.shutdown();
+        }
+        this.executor = executor;
+        this.ownsExecutor = false;
+    }
+
+    synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(queryThreads, new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "query");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            ownsExecutor = true;
+        }
+        return executor;
+    }
+
     /**
      * Evaluates a query.
      *
@@ -92,37 +218,136 @@ public class StructuredRetrieval extends Retrieval {
      * @throws java.lang.Exception
      */
     public ScoredDocument[] runQuery(Node queryTree, int requested) throws Exception {
+        int depth = (resultCache == null) ? 0 : resultCache.getEvaluationDepth(requested);
+        if (depth == 0) {
+            return evaluate(queryTree, requested);
+        }
+
+        String key = queryTree.toString();
+        ScoredDocument[] results = resultCache.get(key, requested);
+        if (results != null) {
+            return results;
+        }
+
+        results = evaluate(queryTree, depth);
+        resultCache.put(key, results);
+
+        if (results.length <= requested) {
+            return results;
+        }
+        ScoredDocument[] top = new ScoredDocument[requested];
+        System.arraycopy(results, 0, top, 0, requested);
+        return top;
+    }
+
+    /**
+     * Evaluates a query without using the result cache.
+     */
+    ScoredDocument[] evaluate(final Node queryTree, final int requested) throws Exception {
+        long documentCount = index.getDocumentCount();
+        int ranges = (int) Math.min(queryThreads, documentCount / MINIMUM_RANGE_LENGTH);
+
+        if (ranges <= 1) {
+            return runQuery(queryTree, requested, 0, Integer.MAX_VALUE);
+        }
+
+        ArrayList<Future<ScoredDocument[]>> futures = new ArrayList<Future<ScoredDocument[]>>();
+        ExecutorService rangeExecutor = getExecutor();
+
+        for (int i = 0; i < ranges; i++) {
+            final int start = (int) (i * documentCount / ranges);
+            // the last range is open, in case the manifest count is low
+            final int end = (i == ranges - 1) ? Integer.MAX_VALUE
+                                              : (int) ((i + 1) * documentCount / ranges);
+
+            futures.add(rangeExecutor.submit(new Callable<ScoredDocument[]>() {
+                public ScoredDocument[] call() throws Exception {
+                    return runQuery(queryTree, requested, start, end);
+                }
+            }));
+        }
+
+        TopDocumentCollector collector = TopDocumentCollector.getCollector(requested);
+        for (Future<ScoredDocument[]> future : futures) {
+            ScoredDocument[] results;
+
+            try {
+                results = future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+
+            for (ScoredDocument document : results) {
+                collector.add(document.document, document.score);
+            }
+        }
+
+        return collector.getResults();
+    }
+
+    /**
+     * Evaluates a query, but only scores documents from start up to, but
+     * not including, end.  This builds a new iterator tree, so it can be
+     * called from many threads at once.
+     */
+    public ScoredDocument[] runQuery(Node queryTree, int requested, int start, int end) throws Exception {
         // construct the query iterators
         ScoreIterator iterator = (ScoreIterator) createIterator(queryTree);
+        TopDocumentCollector collector = TopDocumentCollector.getCollector(requested);
 
-        // now there should be an iterator at the root of this tree
-        PriorityQueue<ScoredDocument> queue = new PriorityQueue<ScoredDocument>();
+        // skip documents that can't make the top k, if the query allows it
+        if (pruning && MaxScoreEvaluator.isPrunable(iterator, index.getMinimumLength())) {
+            MaxScoreEvaluator evaluator =
+                    new MaxScoreEvaluator(index, (UnfilteredCombinationIterator) iterator);
+            evaluator.evaluate(collector, start, end);
+            return collector.getResults();
+        }
 
+        if (start > 0) {
+            iterator.moveTo(start);
+        }
+
+        // now there should be an iterator at the root of this tree
         while (!iterator.isDone()) {
             int document = iterator.nextCandidate();
+            if (document >= end) {
+                break;
+            }
+
             int length = index.getLength(document);
             double score = iterator.score(document, length);
 
-            if (queue.size() <= requested || queue.peek().score < score) {
-                ScoredDocument scoredDocument = new ScoredDocument(document, score);
-                queue.add(scoredDocument);
-
-                if (queue.size() > requested) {
-                    queue.poll();
-                }
-            }
-
+            collector.add(document, score);
             iterator.movePast(document);
         }
 
-        return getArrayResults(queue);
+        return collector.getResults();
     }
 
-    public String getDocumentName(int document) {
+    public String getDocumentName(int document) throws IOException {
         return index.getDocumentName(document);
     }
 
-    public void close() throws IOException {
+    /**
+     * Returns the number of the document with this name, or -1 if the
+     * index has no such document.
+     */
+    public int getDocumentNumber(String name) throws IOException {
+        return index.getDocumentNumber(name);
+    }
+
+    public synchronized void close() throws IOException {
+        if (resultCache != null) {
+            resultCache.clear();
+        }
+        if (ownsExecutor) {
+            executor.shutdown();
+            executor = null;
+            ownsExecutor = false;
+        }
         index.close();
     }
 }
@@ -1,8 +1,6 @@
 // BSD License (http://www.galagosearch.org/license)
 package org.galagosearch.core.retrieval.structured;
 
-import java.util.ArrayList;
-import java.util.PriorityQueue;
 import org.galagosearch.tupleflow.Parameters;
 
 /**
@@ -10,41 +8,70 @@ import org.galagosearch.tupleflow.Parameters;
  * @author trevor
  */
 public class SynonymIterator extends ExtentDisjunctionIterator {
+    // reused for every document, so loadExtents doesn't allocate
+    ExtentIterator[] useable;
+    ExtentArrayIterator[] arrayIterators;
+
     public SynonymIterator(Parameters parameters, ExtentIterator[] iterators) {
         super(iterators);
+        useable = new ExtentIterator[iterators.length];
+        arrayIterators = new ExtentArrayIterator[iterators.length];
+        for (int i = 0; i < iterators.length; i++) {
+            arrayIterators[i] = new ExtentArrayIterator();
+        }
         loadExtents();
     }
 
     public void loadExtents() {
+        if (iterators.size() == 0) {
+            return;
+        }
+
         ExtentIterator iter = iterators.poll();
         document = iter.document();
 
         // get all the iteators that point to this document
-        ArrayList<ExtentIterator> useable = new ArrayList<ExtentIterator>();
+        int useableCount = 0;
         while (iterators.size() > 0 && iterators.peek().document() == document) {
-            useable.add(iterators.poll());
+            useable[useableCount++] = iterators.poll();
         }
-        useable.add(iter);
+        useable[useableCount++] = iter;
 
-        // make a priority queue of these ExtentArrayIterators
-        PriorityQueue<ExtentArrayIterator> arrayIterators = new PriorityQueue<ExtentArrayIterator>();
-        for (ExtentIterator iterator : useable) {
-            arrayIterators.offer(new ExtentArrayIterator(iterator.extents()));
+        // point a cursor at the extents of each one
+        int active = 0;
+        for (int i = 0; i < useableCount; i++) {
+            arrayIterators[active].reset(useable[i].extents());
+            if (!arrayIterators[active].isDone()) {
+                active++;
+            }
         }
-        while (arrayIterators.size() > 0) {
-            ExtentArrayIterator top = arrayIterators.poll();
-            extents.add(top.current());
 
-            if (top.next()) {
-                arrayIterators.offer(top);
+        // merge the extents in order; there are only a few cursors,
+        // so a linear scan for the smallest one is faster than a heap
+        while (active > 0) {
+            int top = 0;
+            for (int i = 1; i < active; i++) {
+                if (arrayIterators[i].compareTo(arrayIterators[top]) < 0) {
+                    top = i;
+                }
+            }
+
+            ExtentArrayIterator cursor = arrayIterators[top];
+            extents.add(cursor.getArray(), cursor.currentIndex());
+
+            if (!cursor.next()) {
+                arrayIterators[top] = arrayIterators[active - 1];
+                arrayIterators[active - 1] = cursor;
+                active--;
             }
         }
 
         // put back the ones we used
-        for (ExtentIterator i : useable) {
-            if (!i.isDone()) {
-                iterators.offer(i);
+        for (int i = 0; i < useableCount; i++) {
+            if (!useable[i].isDone()) {
+                iterators.offer(useable[i]);
             }
+            useable[i] = null;
         }
     }
 }
@@ -0,0 +1,163 @@
+// BSD License (http://www.galagosearch.org/license)
+
+package org.galagosearch.core.retrieval.structured;
+
+import org.galagosearch.core.retrieval.ScoredDocument;
+
+/**
+ * <p>Keeps the top k documents seen so far in a min-heap made of parallel
+ * int and double arrays, so adding a candidate never allocates.  Documents
+ * are ordered the same way as ScoredDocument: by score, with ties going to
+ * the smaller document number.  ScoredDocument objects are only created
+ * by getResults.</p>
+ *
+ * <p>A collector can be reused for many queries with reset.  getCollector
+ * returns one collector per thread, so a server can run queries without
+ * allocating a new heap for each one.</p>
+ *
+ * @author trevor
+ */
+public class TopDocumentCollector {
+    int[] documents;
+    double[] scores;
+    int size;
+    int requested;
+
+    private static final ThreadLocal<TopDocumentCollector> collectors =
+            new ThreadLocal<TopDocumentCollector>() {
+                @Override
+                protected TopDocumentCollector initialValue() {
+                    return new TopDocumentCollector(0);
+                }
+            };
+
+    public TopDocumentCollector(int requested) {
+        documents = new int[0];
+        scores = new double[0];
+        reset(requested);
+    }
+
+    /**
+     * Returns this thread's collector, emptied and set up to keep
+     * requested documents.
+     */
+    public static TopDocumentCollector getCollector(int requested) {
+        TopDocumentCollector collector = collectors.get();
+        collector.reset(requested);
+        return collector;
+    }
+
+    /**
+     * Empties the collector and sets the number of documents it keeps.
+     * The arrays are only reallocated if they are too small.
+     */
+    public void reset(int requested) {
+        this.requested = Math.max(0, requested);
+        this.size = 0;
+
+        if (documents.length < this.requested) {
+            documents = new int[this.requested];
+            scores = new double[this.requested];
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size >= requested;
+    }
+
+    /**
+     * Returns the lowest score in the collector once it is full; a document
+     * with a lower score can't get in.  Before the collector is full, this
+     * is negative infinity.
+     */
+    public double getThreshold() {
+        if (requested == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (!isFull()) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return scores[0];
+    }
+
+    /** True if document a ranks below document b. */
+    private static boolean lessThan(int aDocument, double aScore, int bDocument, double bScore) {
+        if (aScore != bScore) {
+            return aScore < bScore;
+        }
+        return aDocument > bDocument;
+    }
+
+    /**
+     * Offers a document to the collector.  Returns true if it was kept.
+     */
+    public boolean add(int document, double score) {
+        if (size < requested) {
+            siftUp(size++, document, score);
+            return true;
+        }
+
+        if (requested == 0 || !lessThan(documents[0], scores[0], document, score)) {
+            return false;
+        }
+
+        siftDown(0, document, score);
+        return true;
+    }
+
+    private void siftUp(int index, int document, double score) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!lessThan(document, score, documents[parent], scores[parent])) {
+                break;
+            }
+            documents[index] = documents[parent];
+            scores[index] = scores[parent];
+            index = parent;
+        }
+        documents[index] = document;
+        scores[index] = score;
+    }
+
+    private void siftDown(int index, int document, double score) {
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size &&
+                    lessThan(documents[child + 1], scores[child + 1], documents[child], scores[child])) {
+                child++;
+            }
+            if (!lessThan(documents[child], scores[child], document, score)) {
+                break;
+            }
+            documents[index] = documents[child];
+            scores[index] = scores[child];
+            index = child;
+        }
+        documents[index] = document;
+        scores[index] = score;
+    }
+
+    /**
+     * Returns the collected documents, best first.  This empties the collector.
+     */
+    public ScoredDocument[] getResults() {
+        ScoredDocument[] results = new ScoredDocument[size];
+
+        while (size > 0) {
+            results[size - 1] = new ScoredDocument(documents[0], scores[0]);
+            size--;
+            if (size > 0) {
+                siftDown(0, documents[size], scores[size]);
+            }
+        }
+
+        return results;
+    }
+}
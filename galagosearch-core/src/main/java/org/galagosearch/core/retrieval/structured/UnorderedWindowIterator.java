@@ -2,9 +2,8 @@
 package org.galagosearch.core.retrieval.structured;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import org.galagosearch.core.util.ExtentArray;
 import org.galagosearch.tupleflow.Parameters;
-import org.galagosearch.tupleflow.Utility;
 
 /**
  *
@@ -13,29 +12,43 @@ import org.galagosearch.tupleflow.Utility;
 public class UnorderedWindowIterator extends ExtentConjunctionIterator {
     int width;
     boolean overlap;
+    ExtentArrayIterator[] iterators;
 
     /** Creates a new instance of UnorderedWindowIterator */
     public UnorderedWindowIterator(Parameters parameters, ExtentIterator[] extentIterators) throws IOException {
         super(extentIterators);
         this.width = (int) parameters.getAsDefault("width", -1);
         this.overlap = parameters.get("overlap", false);
+        this.iterators = new ExtentArrayIterator[extentIterators.length];
+        for (int i = 0; i < extentIterators.length; i++) {
+            this.iterators[i] = new ExtentArrayIterator();
+        }
         findDocument();
     }
 
     public void loadExtents() {
         extents.reset();
 
-        ExtentArrayIterator[] iterators;
+        for (int i = 0; i < extentIterators.length; i++) {
+            iterators[i].reset(extentIterators[i].extents());
+        }
+        findWindows(iterators, width, overlap, document, extents);
+    }
+
+    /**
+     * Adds every unordered window of the given width to output.  Each
+     * iterator must be positioned at the first extent of one term of
+     * the window in document.
+     */
+    static void findWindows(ExtentArrayIterator[] iterators, int width, boolean overlap,
+                            int document, ExtentArray output) {
         int maximumPosition = 0;
         int minimumPosition = Integer.MAX_VALUE;
 
         // someday this will be a heap/priorityQueue for the overlapping case
-        iterators = new ExtentArrayIterator[extentIterators.length];
-
-        for (int i = 0; i < extentIterators.length; i++) {
-            iterators[i] = new ExtentArrayIterator(extentIterators[i].extents());
-            minimumPosition = Math.min(iterators[i].current().begin, minimumPosition);
-            maximumPosition = Math.max(iterators[i].current().end, maximumPosition);
+        for (int i = 0; i < iterators.length; i++) {
+            minimumPosition = Math.min(iterators[i].currentBegin(), minimumPosition);
+            maximumPosition = Math.max(iterators[i].currentEnd(), maximumPosition);
         }
 
         do {
@@ -43,13 +56,13 @@ public class UnorderedWindowIterator extends ExtentConjunctionIterator {
 
             // try to emit an extent here, but only if the width is small enough
             if (match) {
-                extents.add(document, minimumPosition, maximumPosition);
+                output.add(document, minimumPosition, maximumPosition);
             }
             if (overlap || !match) {
                 // either it didn't just match or we don't care about overlap,
                 // so we want to increment only the very first iterator
                 for (int i = 0; i < iterators.length; i++) {
-                    if (iterators[i].current().begin == minimumPosition) {
+                    if (iterators[i].currentBegin() == minimumPosition) {
                         boolean result = iterators[i].next();
 
                         if (!result) {
@@ -60,7 +73,7 @@ public class UnorderedWindowIterator extends ExtentConjunctionIterator {
             } else {
                 // last was a match, so increment all iterators past the end of the match
                 for (int i = 0; i < iterators.length; i++) {
-                    while (iterators[i].current().begin < maximumPosition) {
+                    while (iterators[i].currentBegin() < maximumPosition) {
                         boolean result = iterators[i].next();
 
                         if (!result) {
@@ -76,8 +89,8 @@ public class UnorderedWindowIterator extends ExtentConjunctionIterator {
 
             // now, reset bounds
             for (int i = 0; i < iterators.length; i++) {
-                minimumPosition = Math.min(minimumPosition, iterators[i].current().begin);
-                maximumPosition = Math.max(maximumPosition, iterators[i].current().end);
+                minimumPosition = Math.min(minimumPosition, iterators[i].currentBegin());
+                maximumPosition = Math.max(maximumPosition, iterators[i].currentEnd());
             }
         } while (true);
     }
@@ -0,0 +1,58 @@
+// BSD License (http://www.galagosearch.org/license)
+
+package org.galagosearch.core.retrieval.traversal;
+
+import java.util.ArrayList;
+import org.galagosearch.core.retrieval.query.Node;
+import org.galagosearch.core.retrieval.query.Traversal;
+import org.galagosearch.core.retrieval.structured.StructuredRetrieval;
+import org.galagosearch.tupleflow.Parameters;
+
+/**
+ * <p>Rewrites plain queries, like #combine(a b c), as sequential dependence
+ * queries: #sdm(a b c).  Only #combine nodes with at least two children that
+ * are all plain terms are changed.  Any of the #sdm parameters (unigramWeight,
+ * orderedWeight, unorderedWeight, orderedWidth, unorderedWidth, mu) given to
+ * this traversal are copied to the new node.</p>
+ *
+ * <p>This isn't one of the default traversals.  It has to see the #text
+ * terms before they are rewritten, so it should be added with
+ * <tt>order</tt> set to <tt>before</tt>.</p>
+ *
+ * @author trevor
+ */
+public class SequentialDependenceTraversal implements Traversal {
+    static final String[] sParameterNames = {
+        "unigramWeight", "orderedWeight", "unorderedWeight",
+        "orderedWidth", "unorderedWidth", "mu"
+    };
+    Parameters sdmParameters;
+
+    public SequentialDependenceTraversal(Parameters parameters, StructuredRetrieval retrieval) {
+        sdmParameters = new Parameters();
+        for (String name : sParameterNames) {
+            if (parameters.containsKey(name)) {
+                sdmParameters.add(name, parameters.get(name));
+            }
+        }
+    }
+
+    public void beforeNode(Node object) throws Exception {
+        // do nothing
+    }
+
+    public Node afterNode(Node original) throws Exception {
+        ArrayList<Node> children = original.getInternalNodes();
+
+        if (!original.getOperator().equals("combine") || children.size() < 2) {
+            return original;
+        }
+        for (Node child : children) {
+            if (!child.getOperator().equals("text") || child.getInternalNodes().size() > 0) {
+                return original;
+            }
+        }
+
+        return new Node("sdm", sdmParameters.clone(), children, original.getPosition());
+    }
+}
@@ -15,13 +15,20 @@ import org.galagosearch.tupleflow.Parameters;
 public class DirichletScorer extends ScoringFunctionIterator {
     double background;
     double mu;
+    long maximumCount;
 
     public DirichletScorer(Parameters parameters, CountIterator iterator) throws IOException {
         super(iterator);
 
         mu = parameters.get("mu", 1500);
+        maximumCount = parameters.get("maximumCount", (long)-1);
         if (parameters.containsKey("collectionProbability")) {
             background = parameters.get("collectionProbability", 0.0001);
+        } else if (parameters.containsKey("collectionFrequency")) {
+            // the index stored the term count for us, so no need to scan the list
+            long collectionLength = parameters.get("collectionLength", (long)0);
+            long count = parameters.get("collectionFrequency", (long)0);
+            background = (double)count / (double)collectionLength;
         } else {
             long collectionLength = parameters.get("collectionLength", (long)0);
             long count = 0;
@@ -37,10 +44,32 @@ public class DirichletScorer extends ScoringFunctionIterator {
     }
 
     public double scoreCount(int count, int length) {
+        return score(count, length, mu, background);
+    }
+
+    /**
+     * Returns the log of the smoothed probability of a term that occurs
+     * count times in a document of the given length.  background is the
+     * probability of the term in the whole collection.
+     */
+    public static double score(int count, int length, double mu, double background) {
         double numerator = count + mu * background;
         double denominator = length + mu;
 
         return Math.log(numerator / denominator);
     }
+
+    // scoreCount grows with count and shrinks with length, so the
+    // bounds come from the largest count and the shortest length.
+    public double maximumScore(int length) {
+        if (maximumCount < 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return scoreCount((int)maximumCount, length);
+    }
+
+    public double maximumMissingScore(int length) {
+        return scoreCount(0, length);
+    }
 }
 
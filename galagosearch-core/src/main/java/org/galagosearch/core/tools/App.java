@@ -97,6 +97,13 @@ public class App {
         System.out.println("  --stemming={true|false}: Selects whether to build stemmed inverted ");
         System.out.println("                           lists in addition to non-stemmed ones.");
         System.out.println("                           [default=true]");
+        System.out.println("  --packed={true|false}:   Selects whether to write postings in ");
+        System.out.println("                           bit-packed blocks, which decode faster.");
+        System.out.println("                           [default=false]");
+        System.out.println("  --bloomFilterRate=<r>:   Writes a Bloom filter over the terms of each ");
+        System.out.println("                           postings part, with false positive rate r, ");
+        System.out.println("                           so lookups of missing terms are faster. ");
+        System.out.println("                           [default=0 (no filter)]");
     }
 
     private static void handleBuild(String[] args) throws Exception {
@@ -116,6 +123,8 @@ public class App {
         boolean stemming = p.get("stemming", true);
 
         BuildIndex build = new BuildIndex();
+        build.setPackedPostings(p.get("packed", false));
+        build.setBloomFilterRate(p.get("bloomFilterRate", 0.0));
         Job job = build.getIndexJob(args[1], docs, useLinks, stemming);
         ErrorStore store = new ErrorStore();
         JobExecutor.runLocally(job, store);
@@ -124,6 +133,15 @@ public class App {
         }
     }
 
+    private static void handleCodecBenchmark(String[] args) throws Exception {
+        if (args.length <= 1) {
+            commandHelp(args[0]);
+            return;
+        }
+
+        CodecBenchmark.main(Utility.subarray(args, 1));
+    }
+
     private static void handleDoc(String[] args) throws IOException {
         if (args.length <= 2) {
             commandHelp(args[0]);
@@ -222,21 +240,28 @@ public class App {
         BatchSearch.main(Utility.subarray(args, 1));
     }
 
-    private static void handleSearch(Retrieval retrieval, DocumentStore store) throws Exception {
-        Search search = new Search(retrieval, store);
+    private static void handleSearch(Retrieval retrieval, DocumentStore store,
+                                     Parameters parameters) throws Exception {
+        int planCacheSize = (int) parameters.get("planCacheSize",
+                                                 (long) Search.DEFAULT_PLAN_CACHE_SIZE);
+        Search search = new Search(retrieval, store, planCacheSize);
+        int threads = (int) parameters.get("serverThreads",
+                                           (long) Runtime.getRuntime().availableProcessors());
+        int queueDepth = (int) parameters.get("serverQueueDepth", 4L * threads);
         int port = Utility.getFreePort();
         Server server = new Server(port);
-        server.addHandler(new SearchWebHandler(search));
+        server.addHandler(new SearchWebHandler(search,
+                SearchWebHandler.createExecutor(threads, queueDepth)));
         server.start();
         System.out.println("Server: http://localhost:" + port);
     }
 
-    private static DocumentStore getDocumentStore(String[] corpusFiles) throws IOException {
+    private static DocumentStore getDocumentStore(String[] corpusFiles, boolean mapped) throws IOException {
         DocumentStore store = null;
         if (corpusFiles.length > 0) {
             ArrayList<DocumentIndexReader> readers = new ArrayList<DocumentIndexReader>();
             for (int i = 0; i < corpusFiles.length; ++i) {
-                readers.add(new DocumentIndexReader(corpusFiles[i]));
+                readers.add(new DocumentIndexReader(corpusFiles[i], mapped));
             }
             store = new DocumentIndexStore(readers);
         } else {
@@ -265,7 +290,7 @@ public class App {
 
         Parameters p = new Parameters(flags);
         Retrieval retrieval = Retrieval.instance(indexPath, p);
-        handleSearch(retrieval, getDocumentStore(corpusFiles));
+        handleSearch(retrieval, getDocumentStore(corpusFiles, p.get("mmap", false)), p);
     }
 
     public static void handleEval(String[] args) throws IOException {
@@ -328,6 +353,7 @@ public class App {
         System.out.println("All commands:");
         System.out.println("   batch-search");
         System.out.println("   build");
+        System.out.println("   codec-benchmark");
         System.out.println("   doc");
         System.out.println("   dump-connection");
         System.out.println("   dump-corpus");
@@ -343,6 +369,16 @@ public class App {
             commandHelpBatchSearch();
         } else if (command.equals("build")) {
             commandHelpBuild();
+        } else if (command.equals("codec-benchmark")) {
+            System.out.println("galago codec-benchmark <indexwriter-file> [flags]");
+            System.out.println();
+            System.out.println("  Compresses the values in any file created by IndexWriter (usually ");
+            System.out.println("  a corpus file) with each block codec, and prints the compression ");
+            System.out.println("  ratio and decompression speed of each one.");
+            System.out.println();
+            System.out.println("  --blockSize=<n>:         Bytes of values in each block. [default=32768]");
+            System.out.println("  --maximumBytes=<n>:      Bytes of values to read. [default=256MB]");
+            System.out.println("  --rounds=<n>:            Times to decompress every block. [default=5]");
         } else if (command.equals("doc")) {
             System.out.println("galago doc <corpus> <identifier>");
             System.out.println();
@@ -394,8 +430,28 @@ public class App {
             System.out.println("  the documentation for ");
             System.out.println("  org.galagosearch.core.retrieval.structured.FeatureFactory for more");
             System.out.println("  information.");
+            System.out.println();
+            System.out.println("  --mmap={true|false}:     Memory-maps the index and corpus files ");
+            System.out.println("                           instead of reading them through buffers. ");
+            System.out.println("                           [default=false]");
+            System.out.println("  --serverThreads=<n>:     Number of searches run at once. ");
+            System.out.println("                           [default=number of processors]");
+            System.out.println("  --serverQueueDepth=<n>:  Number of searches that can wait for a ");
+            System.out.println("                           thread; beyond that, requests get a 503 ");
+            System.out.println("                           (Service Unavailable) response. ");
+            System.out.println("                           [default=4 * serverThreads]");
+            System.out.println("  --resultCacheSize=<n>:   Number of recent query results to keep ");
+            System.out.println("                           in memory.  [default=0]");
+            System.out.println("  --resultCacheDepth=<n>:  Number of results computed and cached for ");
+            System.out.println("                           each query.  [default=100]");
+            System.out.println("  --planCacheSize=<n>:     Number of recent parsed and transformed ");
+            System.out.println("                           queries to keep.  [default=1000]");
+            System.out.println("  --preloadParts={true|false}: Reads the vocabulary of every index ");
+            System.out.println("                           part at startup, in parallel, instead of ");
+            System.out.println("                           when each part is first used. [default=false]");
         } else if (command.equals("all")) {
-            String[] commands = { "batch-search", "build", "doc", "dump-connection", "dump-corpus",
+            String[] commands = { "batch-search", "build", "codec-benchmark", "doc",
+                                  "dump-connection", "dump-corpus",
                                   "dump-index", "dump-keys", "eval", "make-corpus", "search" };
             for (String c : commands) {
                 commandHelp(c);
@@ -420,6 +476,8 @@ public class App {
             handleBatchSearch(args);
         } else if (command.equals("build")) {
             handleBuild(args);
+        } else if (command.equals("codec-benchmark")) {
+            handleCodecBenchmark(args);
         } else if (command.equals("doc")) {
             handleDoc(args);
         } else if (command.equals("dump-connection")) {
@@ -10,6 +10,8 @@ import org.galagosearch.core.index.DocumentNameWriter;
 import org.galagosearch.core.index.ExtentIndexWriter;
 import org.galagosearch.core.index.ExtentValueIndexWriter;
 import org.galagosearch.core.index.ManifestWriter;
+import org.galagosearch.core.index.PackedDocumentNameWriter;
+import org.galagosearch.core.index.PackedPositionIndexWriter;
 import org.galagosearch.core.index.PositionIndexWriter;
 import org.galagosearch.core.parse.AdditionalTextCombiner;
 import org.galagosearch.core.parse.AnchorTextCreator;
@@ -60,6 +62,8 @@ public class BuildIndex {
     String indexPath;
     boolean stemming;
     boolean useLinks;
+    boolean packedPostings;
+    double bloomFilterRate;
 
     public BuildIndex() {
         this.stemming = false;
@@ -72,6 +76,22 @@ public class BuildIndex {
         this.useLinks = true;
     }
 
+    /**
+     * Selects whether the postings parts are written with
+     * PackedPositionIndexWriter instead of PositionIndexWriter.
+     */
+    public void setPackedPostings(boolean packedPostings) {
+        this.packedPostings = packedPostings;
+    }
+
+    /**
+     * Selects whether the postings parts get a Bloom filter over their terms,
+     * with this false positive rate.  A rate of 0 means no filter.
+     */
+    public void setBloomFilterRate(double bloomFilterRate) {
+        this.bloomFilterRate = bloomFilterRate;
+    }
+
     public Stage getSplitStage(String[] inputs) throws IOException {
         Stage stage = new Stage("inputSplit");
         stage.add(new StageConnectionPoint(ConnectionPointType.Output, "splits",
@@ -249,7 +269,14 @@ public class BuildIndex {
         stage.add(new InputStep(inputName));
         Parameters p = new Parameters();
         p.add("filename", indexPath + File.separator + "parts" + File.separator + indexName);
-        stage.add(new Step(PositionIndexWriter.class, p));
+        if (bloomFilterRate > 0) {
+            p.add("bloomFilterRate", Double.toString(bloomFilterRate));
+        }
+        if (packedPostings) {
+            stage.add(new Step(PackedPositionIndexWriter.class, p));
+        } else {
+            stage.add(new Step(PositionIndexWriter.class, p));
+        }
         return stage;
     }
 
@@ -327,6 +354,22 @@ public class BuildIndex {
         return stage;
     }
 
+    /**
+     * Writes document names to a file that can be searched by name as well
+     * as by document number.
+     */
+    public Stage getWriteDocumentNameIndexStage() {
+        Stage stage = new Stage("writeDocumentNameIndex");
+
+        stage.add(new StageConnectionPoint(ConnectionPointType.Input,
+                "numberedDocumentData", new NumberedDocumentData.NumberOrder()));
+        Parameters p = new Parameters();
+        p.add("filename", indexPath + File.separator + "documentNameIndex");
+        stage.add(new InputStep("numberedDocumentData"));
+        stage.add(new Step(PackedDocumentNameWriter.class, p));
+        return stage;
+    }
+
     public Stage getNumberDocumentsStage() {
         Stage stage = new Stage("numberDocuments");
 
@@ -397,6 +440,7 @@ public class BuildIndex {
         job.add(getWriteManifestStage());
         job.add(getWriteExtentsStage());
         job.add(getWriteDocumentNamesStage());
+        job.add(getWriteDocumentNameIndexStage());
         job.add(getWriteDocumentLengthsStage());
         job.add(getNumberDocumentsStage());
         job.add(getNumberPostingsStage("numberPostings", "postings", "numberedPostings"));
@@ -407,6 +451,7 @@ public class BuildIndex {
         job.connect("parsePostings", "numberDocuments", ConnectionAssignmentType.Combined);
         job.connect("numberDocuments", "writeDocumentLengths", ConnectionAssignmentType.Combined);
         job.connect("numberDocuments", "writeDocumentNames", ConnectionAssignmentType.Combined);
+        job.connect("numberDocuments", "writeDocumentNameIndex", ConnectionAssignmentType.Combined);
         job.connect("numberDocuments", "numberPostings", ConnectionAssignmentType.Combined);
         job.connect("numberDocuments", "numberExtents", ConnectionAssignmentType.Combined);
         job.connect("parsePostings", "numberPostings", ConnectionAssignmentType.Each);
@@ -0,0 +1,124 @@
+// BSD License (http://www.galagosearch.org/license)
+package org.galagosearch.core.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.galagosearch.core.index.BlockCodec;
+import org.galagosearch.core.index.IndexReader;
+import org.galagosearch.tupleflow.DataStream;
+import org.galagosearch.tupleflow.Parameters;
+import org.galagosearch.tupleflow.Utility;
+
+/**
+ * Compares the block codecs on the values of an existing index file, usually
+ * a corpus.  The values are gathered into blocks the way IndexWriter does it,
+ * then each codec compresses every block and decompresses all of them a few
+ * times.  The output lists the compression ratio and decompression speed of
+ * each codec.
+ *
+ * @author trevor
+ */
+public class CodecBenchmark {
+    public static final String[] CODECS = { "gzip", "deflate", "fast" };
+
+    public static class Result {
+        public String codec;
+        public long uncompressedBytes;
+        public long compressedBytes;
+        public double compressSeconds;
+        public double decompressSeconds;
+        public int rounds;
+
+        public double getRatio() {
+            return (double) uncompressedBytes / (double) compressedBytes;
+        }
+
+        public double getDecompressionSpeed() {
+            return (double) uncompressedBytes * rounds / decompressSeconds / (1024 * 1024);
+        }
+    }
+
+    /**
+     * Reads values from filename into blocks of about blockSize bytes, stopping
+     * after maximumBytes bytes.
+     */
+    public static List<byte[]> readBlocks(String filename, int blockSize, long maximumBytes) throws IOException {
+        Parameters parameters = new Parameters();
+        parameters.add("blockCacheBytes", "0");
+        IndexReader reader = new IndexReader(filename, parameters);
+        IndexReader.Iterator iterator = reader.getIterator();
+        ArrayList<byte[]> blocks = new ArrayList<byte[]>();
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        long total = 0;
+
+        while (!iterator.isDone() && total < maximumBytes) {
+            DataStream stream = iterator.getValueStream();
+            byte[] value = new byte[(int) stream.length()];
+            stream.readFully(value);
+            block.write(value);
+            total += value.length;
+
+            if (block.size() >= blockSize) {
+                blocks.add(block.toByteArray());
+                block.reset();
+            }
+            iterator.nextKey();
+        }
+        if (block.size() > 0) {
+            blocks.add(block.toByteArray());
+        }
+
+        reader.close();
+        return blocks;
+    }
+
+    public static Result measure(BlockCodec codec, List<byte[]> blocks, int rounds) throws IOException {
+        Result result = new Result();
+        result.codec = codec.getName();
+        result.rounds = rounds;
+
+        ArrayList<byte[]> compressed = new ArrayList<byte[]>();
+        long start = System.nanoTime();
+        for (byte[] block : blocks) {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            codec.compress(block, block.length, stream);
+            compressed.add(stream.toByteArray());
+            result.uncompressedBytes += block.length;
+            result.compressedBytes += stream.size();
+        }
+        result.compressSeconds = (System.nanoTime() - start) / 1e9;
+
+        // the first pass warms up the JIT, and isn't timed
+        for (int round = -1; round < rounds; round++) {
+            if (round == 0) {
+                start = System.nanoTime();
+            }
+            for (int i = 0; i < blocks.size(); i++) {
+                byte[] data = compressed.get(i);
+                codec.decompress(data, 0, data.length, new byte[blocks.get(i).length]);
+            }
+        }
+        result.decompressSeconds = (System.nanoTime() - start) / 1e9;
+        return result;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String filename = args[0];
+        Parameters parameters = new Parameters(Utility.subarray(args, 1));
+
+        int blockSize = (int) parameters.get("blockSize", 32768);
+        long maximumBytes = parameters.get("maximumBytes", 256L << 20);
+        int rounds = (int) parameters.get("rounds", 5);
+        List<byte[]> blocks = readBlocks(filename, blockSize, maximumBytes);
+
+        System.out.format("%-10s %12s %12s %8s %12s\n", "codec", "bytes", "compressed", "ratio", "decode MB/s");
+        for (String name : CODECS) {
+            Result result = measure(BlockCodec.getCodec(name), blocks, rounds);
+            System.out.format("%-10s %12d %12d %8.2f %12.1f\n", result.codec,
+                              result.uncompressedBytes, result.compressedBytes,
+                              result.getRatio(), result.getDecompressionSpeed());
+        }
+    }
+}
@@ -5,6 +5,7 @@ package org.galagosearch.core.tools;
 import org.galagosearch.core.retrieval.*;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -17,18 +18,46 @@ import org.galagosearch.core.store.SnippetGenerator;
 import org.galagosearch.tupleflow.Parameters;
 
 /**
+ * <p>Runs queries for the search server.  Parsing and transforming a query
+ * gives the same tree every time, so the last few query plans (the parsed
+ * tree, the transformed tree and the query terms) are kept, keyed by the
+ * query text.  The cached trees are shared between searches and must not be
+ * modified.</p>
  *
  * @author trevor
  */
 public class Search {
+    public static final int DEFAULT_PLAN_CACHE_SIZE = 1000;
+
     SnippetGenerator generator;
     DocumentStore store;
     Retrieval retrieval;
+    LinkedHashMap<String, QueryPlan> plans;
 
     public Search(Retrieval retrieval, DocumentStore store) {
+        this(retrieval, store, DEFAULT_PLAN_CACHE_SIZE);
+    }
+
+    /**
+     * Keeps the plans of the last planCacheSize distinct queries;
+     * if planCacheSize is 0, every query is parsed and transformed.
+     */
+    public Search(Retrieval retrieval, DocumentStore store, final int planCacheSize) {
         this.store = store;
         this.retrieval = retrieval;
         generator = new SnippetGenerator();
+        plans = new LinkedHashMap<String, QueryPlan>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, QueryPlan> eldest) {
+                return size() > planCacheSize;
+            }
+        };
+    }
+
+    public static class QueryPlan {
+        public Node query;
+        public Node transformedQuery;
+        public Set<String> queryTerms;
     }
 
     public void close() throws IOException {
@@ -77,14 +106,36 @@ public class Search {
         return store.get(identifier);
     }
 
+    /**
+     * Returns the parsed and transformed trees for this query text, from the
+     * plan cache if possible.
+     */
+    public QueryPlan getPlan(String query) throws Exception {
+        synchronized (plans) {
+            QueryPlan plan = plans.get(query);
+            if (plan != null) {
+                return plan;
+            }
+        }
+
+        QueryPlan plan = new QueryPlan();
+        plan.query = parseQuery(query, new Parameters());
+        plan.transformedQuery = retrieval.transformQuery(plan.query);
+        plan.queryTerms = StructuredQuery.findQueryTerms(plan.query);
+
+        synchronized (plans) {
+            plans.put(query, plan);
+        }
+        return plan;
+    }
+
     public SearchResult runQuery(String query, int startAt, int count, boolean summarize) throws Exception {
-        Node tree = parseQuery(query, new Parameters());
-        Node transformed = retrieval.transformQuery(tree);
-        ScoredDocument[] results = retrieval.runQuery(transformed, startAt + count);
+        QueryPlan plan = getPlan(query);
+        ScoredDocument[] results = retrieval.runQuery(plan.transformedQuery, startAt + count);
         SearchResult result = new SearchResult();
-        Set<String> queryTerms = StructuredQuery.findQueryTerms(tree);
-        result.query = tree;
-        result.transformedQuery = transformed;
+        Set<String> queryTerms = plan.queryTerms;
+        result.query = plan.query;
+        result.transformedQuery = plan.transformedQuery;
         result.items = new ArrayList();
 
         for (int i = startAt; i < Math.min(startAt + count, results.length); i++) {
@@ -12,6 +12,17 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -29,6 +40,12 @@ import org.znerd.xmlenc.XMLOutputter;
  * <p>This class is set up to work with an embedded Jetty instance, but it should be
  * fairly easy to wrap into a Servlet for use with something else (Tomcat, Glassfish, etc.)</p>
  *
+ * <p>If the handler is given an executor, searches run on the executor instead of
+ * the thread that received the request.  Every search builds its own iterators over
+ * the shared index, so many can run at once.  An executor made by createExecutor has
+ * a fixed number of threads and a bounded queue; once the queue is full, new search
+ * requests are turned away with 503 (Service Unavailable) instead of piling up.</p>
+ *
  * <p>URLs supported:</p>
  *
  * <table>
@@ -58,9 +75,42 @@ import org.znerd.xmlenc.XMLOutputter;
  */
 public class SearchWebHandler extends AbstractHandler {
     Search search;
+    ExecutorService executor;
 
     public SearchWebHandler(Search search) {
+        this(search, null);
+    }
+
+    /**
+     * Runs searches on executor.  If executor is null, searches run on the
+     * thread that handles the request.
+     */
+    public SearchWebHandler(Search search, ExecutorService executor) {
         this.search = search;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns an executor with the given number of threads that queues at
+     * most queueDepth searches, and rejects any more.
+     */
+    public static ThreadPoolExecutor createExecutor(int threads, int queueDepth) {
+        BlockingQueue<Runnable> queue;
+        if (queueDepth > 0) {
+            queue = new ArrayBlockingQueue<Runnable>(queueDepth);
+        } else {
+            queue = new SynchronousQueue<Runnable>();
+        }
+
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue,
+                new ThreadFactory() {
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "search");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                },
+                new ThreadPoolExecutor.AbortPolicy());
     }
 
     public String getEscapedString(String text) {
@@ -314,6 +364,8 @@ public class SearchWebHandler extends AbstractHandler {
         if (request.getPathInfo().equals("/search")) {
             try {
                 handleSearch(request, response);
+            } catch(RejectedExecutionException e) {
+                handleBusy(response);
             } catch(Exception e) {
                 throw new ServletException("Caught exception from handleSearch", e);
             }
@@ -322,6 +374,8 @@ public class SearchWebHandler extends AbstractHandler {
         } else if (request.getPathInfo().equals("/searchxml")) {
             try {
                 handleSearchXML(request, response);
+            } catch(RejectedExecutionException e) {
+                handleBusy(response);
             } catch(Exception e) {
                 throw new ServletException("Caught exception from handleSearchXML", e);
             }
@@ -334,13 +388,39 @@ public class SearchWebHandler extends AbstractHandler {
         }
     }
 
+    /**
+     * Tells the client that the search queue is full.
+     */
+    public void handleBusy(HttpServletResponse response) throws IOException {
+        response.setHeader("Retry-After", "1");
+        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                           "Too many searches are waiting; try again later.");
+    }
+
     private SearchResult performSearch(HttpServletRequest request) throws Exception {
-        String query = request.getParameter("q");
+        final String query = request.getParameter("q");
         String startAtString = request.getParameter("start");
         String countString = request.getParameter("n");
-        int startAt = (startAtString == null) ? 0 : Integer.parseInt(startAtString);
-        int resultCount = (countString == null) ? 10 : Integer.parseInt(countString);
-        SearchResult result = search.runQuery(query, startAt, resultCount, true);
-        return result;
+        final int startAt = (startAtString == null) ? 0 : Integer.parseInt(startAtString);
+        final int resultCount = (countString == null) ? 10 : Integer.parseInt(countString);
+
+        if (executor == null) {
+            return search.runQuery(query, startAt, resultCount, true);
+        }
+
+        Future<SearchResult> future = executor.submit(new Callable<SearchResult>() {
+            public SearchResult call() throws Exception {
+                return search.runQuery(query, startAt, resultCount, true);
+            }
+        });
+
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
     }
 }
@@ -0,0 +1,50 @@
+// BSD License (http://www.galagosearch.org/license)
+
+package org.galagosearch.core.util;
+
+/**
+ * Searches in sorted arrays.
+ *
+ * @author trevor
+ */
+public class ArraySearch {
+    /**
+     * Returns the smallest index i, with from &lt;= i &lt; to, where
+     * array[i] &gt;= key, or to if there isn't one.  The array must be
+     * sorted between from and to.
+     *
+     * This is an exponential (galloping) search: it probes from+1, from+2,
+     * from+4 and so on until it passes key, then binary searches the last
+     * gap.  Finding something d entries away costs O(log d) comparisons,
+     * so it's cheap for short skips and long ones.
+     */
+    public static int gallop(int[] array, int from, int to, int key) {
+        if (from >= to || array[from] >= key) {
+            return from;
+        }
+
+        // array[low] < key always holds
+        int low = from;
+        int step = 1;
+        int high = from + step;
+
+        while (high < to && array[high] < key) {
+            low = high;
+            step <<= 1;
+            high = from + step;
+        }
+        high = Math.min(high, to);
+
+        // now array[low] < key, and array[high] >= key (or high == to)
+        while (high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (array[middle] < key) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+
+        return high;
+    }
+}
@@ -0,0 +1,127 @@
+// BSD License (http://www.galagosearch.org/license)
+
+package org.galagosearch.core.util;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>A Bloom filter over byte array keys.  If mightContain returns false, the
+ * key was never added; if it returns true, the key was probably added.</p>
+ *
+ * <p>Each key is hashed once into 64 bits, and the bit positions are derived
+ * from the two halves of that hash, so a lookup costs one pass over the key.
+ * Callers that see all the keys before they know how many there are can keep
+ * just the hash of each key, and build the filter from those.</p>
+ *
+ * @author trevor
+ */
+public class BloomFilter {
+    long[] bits;
+    long bitCount;
+    int hashCount;
+
+    BloomFilter(long[] bits, int hashCount) {
+        this.bits = bits;
+        this.bitCount = (long) bits.length * 64;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Makes an empty filter for expectedKeys keys, sized so that about
+     * falsePositiveRate of the lookups for absent keys return true.
+     */
+    public BloomFilter(long expectedKeys, double falsePositiveRate) {
+        long keys = Math.max(1, expectedKeys);
+        double ln2 = Math.log(2);
+        long minimumBits = (long) Math.ceil(-keys * Math.log(falsePositiveRate) / (ln2 * ln2));
+        long words = Math.max(1, (minimumBits + 63) / 64);
+
+        bits = new long[(int) words];
+        bitCount = words * 64;
+        hashCount = (int) Math.max(1, Math.round((double) bitCount / keys * ln2));
+    }
+
+    /**
+     * Returns a 64-bit hash of the key, suitable for add(long) and mightContain(long).
+     */
+    public static long hash(byte[] key) {
+        // FNV-1a, followed by the MurmurHash3 finalizer to mix the high bits
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private long position(long hash, int i) {
+        long first = hash & 0xffffffffL;
+        long second = hash >>> 32;
+        long combined = first + i * second;
+        return (combined & Long.MAX_VALUE) % bitCount;
+    }
+
+    public void add(long hash) {
+        for (int i = 0; i < hashCount; i++) {
+            long p = position(hash, i);
+            bits[(int) (p >>> 6)] |= 1L << p;
+        }
+    }
+
+    public void add(byte[] key) {
+        add(hash(key));
+    }
+
+    public boolean mightContain(long hash) {
+        for (int i = 0; i < hashCount; i++) {
+            long p = position(hash, i);
+            if ((bits[(int) (p >>> 6)] & (1L << p)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean mightContain(byte[] key) {
+        return mightContain(hash(key));
+    }
+
+    /**
+     * Returns the number of bytes write will produce.
+     */
+    public long getLength() {
+        return 4 + 4 + 8L * bits.length;
+    }
+
+    public void write(DataOutput output) throws IOException {
+        output.writeInt(hashCount);
+        output.writeInt(bits.length);
+        for (long word : bits) {
+            output.writeLong(word);
+        }
+    }
+
+    /**
+     * Reads a filter written by write.
+     */
+    public static BloomFilter read(byte[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int hashCount = buffer.getInt();
+        int words = buffer.getInt();
+
+        if (hashCount <= 0 || words <= 0 || data.length != 8 + 8L * words) {
+            throw new IOException("The Bloom filter data is corrupt.");
+        }
+
+        long[] bits = new long[words];
+        buffer.asLongBuffer().get(bits);
+        return new BloomFilter(bits, hashCount);
+    }
+}
@@ -2,19 +2,32 @@
 
 package org.galagosearch.core.util;
 
+import java.util.Arrays;
 import org.galagosearch.core.retrieval.structured.Extent;
 
 /**
+ * A growable list of extents, stored as parallel arrays of documents,
+ * begins and ends instead of as Extent objects, so filling and refilling
+ * it doesn't allocate.  Weights are only stored once an extent with a
+ * weight other than 1 is added.
+ *
  * @author trevor
  */
 public class ExtentArray {
-    Extent[] _array;
+    int[] _documents;
+    int[] _begins;
+    int[] _ends;
+    double[] _weights;
+    boolean _weighted;
     int _position;
 
     public ExtentArray(int capacity) {
-        _array = new Extent[capacity];
-        for(int i=0; i<_array.length; i++)
-            _array[i] = new Extent();
+        capacity = Math.max(1, capacity);
+        _documents = new int[capacity];
+        _begins = new int[capacity];
+        _ends = new int[capacity];
+        _weights = null;
+        _weighted = false;
         _position = 0;
     }
 
@@ -23,55 +36,111 @@ public class ExtentArray {
     }
 
     private void makeRoomForOneObject() {
-        if(_position == _array.length) {
-            // grow array if we're out of space
-            _array = _copyArray(_array.length * 2);
+        if (_position == _begins.length) {
+            // grow arrays if we're out of space
+            int size = _begins.length * 2;
+            _documents = copy(_documents, size);
+            _begins = copy(_begins, size);
+            _ends = copy(_ends, size);
+
+            if (_weighted) {
+                double[] weights = new double[size];
+                System.arraycopy(_weights, 0, weights, 0, _position);
+                _weights = weights;
+            } else {
+                _weights = null;
+            }
+        }
+    }
+
+    private int[] copy(int[] array, int size) {
+        int[] result = new int[size];
+        System.arraycopy(array, 0, result, 0, _position);
+        return result;
+    }
+
+    private void setWeight(int index, double weight) {
+        if (!_weighted) {
+            if (weight == 1) {
+                return;
+            }
+            if (_weights == null) {
+                _weights = new double[_begins.length];
+            }
+            Arrays.fill(_weights, 0, index, 1);
+            _weighted = true;
         }
+        _weights[index] = weight;
     }
-    
+
     public void add(Extent value) {
-        makeRoomForOneObject();
-        
-        _array[_position] = value;
-        _position += 1;
+        add(value.document, value.begin, value.end, value.weight);
     }
-    
+
     public void add(int document, int begin, int end) {
         add(document, begin, end, 1);
     }
 
     public void add(int document, int begin, int end, double weight) {
         makeRoomForOneObject();
-        
-        Extent e = _array[_position];
-        e.document = document;
-        e.begin = begin;
-        e.end = end;
-        e.weight = weight;
+
+        _documents[_position] = document;
+        _begins[_position] = begin;
+        _ends[_position] = end;
+        setWeight(_position, weight);
         _position += 1;
     }
-    
+
+    /**
+     * Adds a copy of extent i of other.
+     */
+    public void add(ExtentArray other, int i) {
+        add(other._documents[i], other._begins[i], other._ends[i], other.weight(i));
+    }
+
+    public int document(int i) {
+        return _documents[i];
+    }
+
+    public int begin(int i) {
+        return _begins[i];
+    }
+
+    public int end(int i) {
+        return _ends[i];
+    }
+
+    public double weight(int i) {
+        return _weighted ? _weights[i] : 1;
+    }
+
+    /**
+     * Returns the extents as Extent objects.  This allocates a new array
+     * on every call, so it shouldn't be used by query operators.
+     */
     public Extent[] getBuffer() {
-        return _array;
+        return toArray();
     }
 
     public int getPosition() {
         return _position;
     }
 
-    private Extent[] _copyArray(int newSize) {
-        Extent[] result = new Extent[newSize];
-        System.arraycopy(_array, 0, result, 0, _position);
-        for(int i=_position; i<result.length; i++)
-            result[i] = new Extent();
+    public Extent[] toArray() {
+        Extent[] result = new Extent[_position];
+        for (int i = 0; i < _position; i++) {
+            Extent e = new Extent();
+            e.document = _documents[i];
+            e.begin = _begins[i];
+            e.end = _ends[i];
+            e.weight = weight(i);
+            result[i] = e;
+        }
         return result;
     }
 
-    public Extent[] toArray() {
-        return _copyArray(_position);
-    }
-    
     public void reset() {
         _position = 0;
+        _weighted = false;
     }
 }
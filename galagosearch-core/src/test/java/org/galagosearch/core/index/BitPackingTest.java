@@ -0,0 +1,73 @@
+// BSD License (http://www.galagosearch.org/license)
+package org.galagosearch.core.index;
+
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author trevor
+ */
+public class BitPackingTest extends TestCase {
+    public BitPackingTest(String testName) {
+        super(testName);
+    }
+
+    public void testBitsNeeded() {
+        assertEquals(0, BitPacking.bitsNeeded(0));
+        assertEquals(1, BitPacking.bitsNeeded(1));
+        assertEquals(2, BitPacking.bitsNeeded(3));
+        assertEquals(3, BitPacking.bitsNeeded(4));
+        assertEquals(31, BitPacking.bitsNeeded(Integer.MAX_VALUE));
+    }
+
+    private void roundTrip(int[] values) {
+        CompressedByteBuffer buffer = new CompressedByteBuffer();
+        BitPacking.pack(buffer, values, 0, values.length);
+        byte[] data = buffer.getBytes();
+
+        // read the vbyte minimum
+        int minimum = 0;
+        int position = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = data[position++] & 0xff;
+            minimum |= (b & 0x7f) << shift;
+            if ((b & 0x80) != 0) {
+                break;
+            }
+        }
+        int bits = data[position++];
+        assertEquals(position + BitPacking.packedLength(values.length, bits), buffer.length());
+
+        int[] output = new int[values.length + 1];
+        output[values.length] = -1;
+        BitPacking.unpack(data, position, bits, minimum, output, 0, values.length);
+
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], output[i]);
+        }
+        assertEquals(-1, output[values.length]);
+    }
+
+    public void testConstant() {
+        int[] values = new int[128];
+        java.util.Arrays.fill(values, 7);
+        roundTrip(values);
+    }
+
+    public void testRandomWidths() {
+        Random random = new Random(5);
+
+        for (int bits = 1; bits <= 31; bits++) {
+            int[] values = new int[1 + random.nextInt(128)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = 100 + (random.nextInt() >>> (32 - bits));
+            }
+            roundTrip(values);
+        }
+    }
+
+    public void testLargeValues() {
+        roundTrip(new int[] { 0, Integer.MAX_VALUE, 5, Integer.MAX_VALUE - 1 });
+    }
+}
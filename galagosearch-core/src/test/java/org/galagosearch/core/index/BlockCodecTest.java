@@ -0,0 +1,88 @@
+// BSD License (http://www.galagosearch.org/license)
+
+package org.galagosearch.core.index;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author trevor
+ */
+public class BlockCodecTest extends TestCase {
+    public BlockCodecTest(String testName) {
+        super(testName);
+    }
+
+    private void assertRoundTrip(BlockCodec codec, byte[] data) throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(new byte[] { 1, 2, 3 });
+        codec.compress(data, data.length, stream);
+
+        byte[] compressed = stream.toByteArray();
+        byte[] decompressed = new byte[data.length];
+        codec.decompress(compressed, 3, compressed.length - 3, decompressed);
+        assertTrue(codec.getName(), Arrays.equals(data, decompressed));
+    }
+
+    private byte[][] makeInputs() {
+        Random random = new Random(7);
+
+        byte[] noise = new byte[5000];
+        random.nextBytes(noise);
+
+        // words from a small vocabulary, so there are many matches
+        StringBuilder text = new StringBuilder();
+        String[] words = { "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog" };
+        for (int i = 0; i < 20000; i++) {
+            text.append(words[random.nextInt(words.length)]).append(' ');
+        }
+
+        // long runs, where matches overlap the bytes they copy
+        byte[] runs = new byte[3000];
+        for (int i = 0; i < runs.length; i++) {
+            runs[i] = (byte) (i / 1000);
+        }
+
+        return new byte[][] { new byte[0], new byte[] { 42 }, "abcabcabc".getBytes(),
+                              noise, text.toString().getBytes(), runs };
+    }
+
+    public void testRoundTrip() throws IOException {
+        for (String name : new String[] { "gzip", "deflate", "fast" }) {
+            BlockCodec codec = BlockCodec.getCodec(name);
+            assertEquals(name, codec.getName());
+
+            for (byte[] input : makeInputs()) {
+                assertRoundTrip(codec, input);
+            }
+        }
+    }
+
+    public void testFastCompresses() throws IOException {
+        byte[] text = makeInputs()[4];
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        new FastBlockCodec().compress(text, text.length, stream);
+        assertTrue(stream.size() < text.length * 2 / 3);
+    }
+
+    public void testTruncatedBlock() throws IOException {
+        byte[] text = makeInputs()[4];
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        new FastBlockCodec().compress(text, text.length, stream);
+
+        try {
+            new FastBlockCodec().decompress(stream.toByteArray(), 0, stream.size() / 2, new byte[text.length]);
+            fail("Expected an exception");
+        } catch (IOException e) {
+        }
+    }
+
+    public void testCodecByClassName() throws IOException {
+        BlockCodec codec = BlockCodec.getCodec(FastBlockCodec.class.getName());
+        assertTrue(codec instanceof FastBlockCodec);
+    }
+}
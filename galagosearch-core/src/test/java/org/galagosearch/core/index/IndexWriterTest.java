@@ -156,4 +156,215 @@ public class IndexWriterTest extends TestCase {
         }
         reader.close();
     }
+
+    public void testMappedRead() throws FileNotFoundException, IOException {
+        for (String compressed : new String[] { "false", "true" }) {
+            Parameters parameters = new Parameters();
+            parameters.add("blockSize", Long.toString(64));
+            parameters.add("isCompressed", compressed);
+            temporary = Utility.createTemporary();
+            IndexWriter writer = new IndexWriter(temporary.getAbsolutePath(), parameters);
+
+            for (int i = 0; i < 1000; ++i) {
+                String key = String.format("%05d", i);
+                String value = String.format("value%05d", i);
+                writer.add(new GenericElement(key, value));
+            }
+            writer.close();
+
+            IndexReader reader = new IndexReader(temporary.getAbsolutePath(), true);
+            assertTrue(reader.isMapped());
+
+            for (int i = 1000-1; i >= 0; i--) {
+                String key = String.format("%05d", i);
+                String value = String.format("value%05d", i);
+
+                assertEquals(value, reader.getValueString(key));
+            }
+            reader.close();
+            temporary.delete();
+        }
+    }
+
+    public void testVocabularyCache() throws FileNotFoundException, IOException {
+        Parameters parameters = new Parameters();
+        parameters.add("blockSize", Long.toString(64));
+        temporary = Utility.createTemporary();
+        IndexWriter writer = new IndexWriter(temporary.getAbsolutePath(), parameters);
+
+        for (int i = 0; i < 1000; ++i) {
+            String key = String.format("%05d", i);
+            String value = String.format("value%05d", i);
+            writer.add(new GenericElement(key, value));
+        }
+        writer.close();
+
+        Parameters readParameters = new Parameters();
+        readParameters.add("vocabularyCacheSize", "2");
+        IndexReader reader = new IndexReader(temporary.getAbsolutePath(), readParameters);
+
+        assertEquals("value00010", reader.getValueString("00010"));
+        assertEquals("value00010", reader.getValueString("00010"));
+        assertEquals(1, reader.getVocabularyCacheHits());
+        assertEquals(1, reader.getVocabularyCacheMisses());
+
+        // push the first block out of the cache
+        assertEquals("value00500", reader.getValueString("00500"));
+        assertEquals("value00900", reader.getValueString("00900"));
+        assertEquals("value00010", reader.getValueString("00010"));
+        assertEquals(1, reader.getVocabularyCacheHits());
+        assertEquals(4, reader.getVocabularyCacheMisses());
+        reader.close();
+    }
+
+    public void testBlockCache() throws FileNotFoundException, IOException {
+        Parameters parameters = new Parameters();
+        parameters.add("blockSize", Long.toString(1024));
+        parameters.add("isCompressed", "true");
+        temporary = Utility.createTemporary();
+        IndexWriter writer = new IndexWriter(temporary.getAbsolutePath(), parameters);
+
+        for (int i = 0; i < 1000; ++i) {
+            String key = String.format("%05d", i);
+            String value = String.format("value%05d", i);
+            writer.add(new GenericElement(key, value));
+        }
+        writer.close();
+
+        IndexReader reader = new IndexReader(temporary.getAbsolutePath());
+        assertEquals("value00010", reader.getValueString("00010"));
+        assertEquals("value00011", reader.getValueString("00011"));
+        assertEquals(1, reader.getBlockCacheHits());
+        assertEquals(1, reader.getBlockCacheMisses());
+
+        for (int i = 1000-1; i >= 0; i--) {
+            String key = String.format("%05d", i);
+            String value = String.format("value%05d", i);
+
+            assertEquals(value, reader.getValueString(key));
+        }
+        reader.close();
+
+        // blocks larger than the budget aren't cached
+        Parameters readParameters = new Parameters();
+        readParameters.add("blockCacheBytes", "10");
+        reader = new IndexReader(temporary.getAbsolutePath(), readParameters);
+        assertEquals("value00010", reader.getValueString("00010"));
+        assertEquals("value00011", reader.getValueString("00011"));
+        assertEquals(0, reader.getBlockCacheHits());
+        assertEquals(2, reader.getBlockCacheMisses());
+        reader.close();
+    }
+
+    public void testBlockCodecs() throws FileNotFoundException, IOException {
+        for (String codec : new String[] { "gzip", "deflate", "fast" }) {
+            Parameters parameters = new Parameters();
+            parameters.add("blockSize", Long.toString(1024));
+            parameters.add("isCompressed", "true");
+            parameters.add("blockCodec", codec);
+            temporary = Utility.createTemporary();
+            IndexWriter writer = new IndexWriter(temporary.getAbsolutePath(), parameters);
+
+            for (int i = 0; i < 1000; ++i) {
+                String key = String.format("%05d", i);
+                String value = String.format("value%05d", i);
+                writer.add(new GenericElement(key, value));
+            }
+            writer.close();
+
+            IndexReader reader = new IndexReader(temporary.getAbsolutePath());
+            assertEquals(codec, reader.getManifest().get("blockCodec"));
+
+            for (int i = 1000-1; i >= 0; i--) {
+                String key = String.format("%05d", i);
+                String value = String.format("value%05d", i);
+
+                assertEquals(value, reader.getValueString(key));
+            }
+            reader.close();
+            temporary.delete();
+        }
+    }
+
+    public void testBloomFilter() throws FileNotFoundException, IOException {
+        Parameters parameters = new Parameters();
+        parameters.add("blockSize", Long.toString(256));
+        parameters.add("bloomFilterRate", "0.01");
+        temporary = Utility.createTemporary();
+        IndexWriter writer = new IndexWriter(temporary.getAbsolutePath(), parameters);
+
+        for (int i = 0; i < 1000; i += 2) {
+            String key = String.format("%05d", i);
+            String value = String.format("value%05d", i);
+            writer.add(new GenericElement(key, value));
+        }
+        writer.close();
+
+        assertTrue(IndexReader.isIndexFile(temporary.getAbsolutePath()));
+        IndexReader reader = new IndexReader(temporary.getAbsolutePath());
+        assertTrue(reader.hasBloomFilter());
+        assertTrue(reader.getVocabulary().getSlotCount() > 1);
+
+        for (int i = 0; i < 1000; i += 2) {
+            String key = String.format("%05d", i);
+            assertEquals(String.format("value%05d", i), reader.getValueString(key));
+        }
+
+        // almost all the missing keys are answered without reading a block
+        long misses = reader.getVocabularyCacheMisses();
+        for (int i = 1; i < 1000; i += 2) {
+            assertNull(reader.getIterator(String.format("%05d", i)));
+        }
+        assertTrue(reader.getVocabularyCacheMisses() - misses < 25);
+
+        IndexReader.Iterator iterator = reader.getIterator();
+        int count = 0;
+        while (!iterator.isDone()) {
+            count++;
+            iterator.nextKey();
+        }
+        assertEquals(500, count);
+        reader.close();
+    }
+
+    public void testLookupMissingKeys() throws FileNotFoundException, IOException {
+        Parameters parameters = new Parameters();
+        parameters.add("blockSize", Long.toString(256));
+        temporary = Utility.createTemporary();
+        IndexWriter writer = new IndexWriter(temporary.getAbsolutePath(), parameters);
+
+        for (int i = 0; i < 1000; i += 2) {
+            String key = String.format("%05d", i);
+            String value = String.format("value%05d", i);
+            writer.add(new GenericElement(key, value));
+        }
+        // keys with high bytes sort after all the digits
+        writer.add(new GenericElement("\u00e9t\u00e9", "summer"));
+        writer.close();
+
+        IndexReader reader = new IndexReader(temporary.getAbsolutePath());
+        assertTrue(reader.getVocabulary().getSlotCount() > 1);
+
+        for (int i = 0; i < 1000; i++) {
+            String key = String.format("%05d", i);
+            IndexReader.Iterator iterator = reader.getIterator(key);
+
+            if (i % 2 == 0) {
+                assertEquals(key, iterator.getKey());
+                assertEquals(String.format("value%05d", i), iterator.getValueString());
+            } else {
+                assertNull(iterator);
+            }
+        }
+
+        assertEquals("summer", reader.getValueString("\u00e9t\u00e9"));
+        assertNull(reader.getIterator("\u00e9"));
+        assertNull(reader.getIterator("/"));
+
+        IndexReader.Iterator iterator = reader.getIterator();
+        iterator.skipTo(Utility.makeBytes("00101"));
+        assertFalse(iterator.isDone());
+        assertEquals("00102", iterator.getKey());
+        reader.close();
+    }
 }
@@ -0,0 +1,103 @@
+// BSD License (http://www.galagosearch.org/license)
+
+package org.galagosearch.core.index;
+
+import java.io.File;
+import java.io.IOException;
+import junit.framework.TestCase;
+import org.galagosearch.core.types.NumberedDocumentData;
+import org.galagosearch.tupleflow.FakeParameters;
+import org.galagosearch.tupleflow.Parameters;
+import org.galagosearch.tupleflow.Utility;
+
+/**
+ *
+ * @author trevor
+ */
+public class PackedDocumentNameReaderTest extends TestCase {
+    public PackedDocumentNameReaderTest(String testName) {
+        super(testName);
+    }
+
+    private String[] makeNames() {
+        String[] names = new String[100];
+        for (int i = 0; i < names.length; i++) {
+            if (i % 7 == 0) {
+                names[i] = "doc" + (names.length - i);
+            } else if (i % 11 == 0) {
+                names[i] = "caf\u00e9-" + i;
+            } else {
+                names[i] = String.format("WTX-B01-%04d", i);
+            }
+        }
+        names[50] = "";
+        return names;
+    }
+
+    private File writeNames(String[] names, int groupSize) throws IOException {
+        File temporary = Utility.createTemporary();
+        Parameters p = new Parameters();
+        p.add("filename", temporary.toString());
+        p.add("groupSize", Integer.toString(groupSize));
+
+        PackedDocumentNameWriter writer = new PackedDocumentNameWriter(new FakeParameters(p));
+        for (int i = 0; i < names.length; i++) {
+            writer.process(new NumberedDocumentData(names[i], "", i, 10));
+        }
+        writer.close();
+        return temporary;
+    }
+
+    public void testLookups() throws IOException {
+        String[] names = makeNames();
+
+        for (int groupSize : new int[] { 1, 3, 16, 200 }) {
+            File temporary = writeNames(names, groupSize);
+            assertTrue(PackedDocumentNameReader.isPackedNamesFile(temporary.toString()));
+            PackedDocumentNameReader reader = new PackedDocumentNameReader(temporary.toString());
+
+            assertEquals(names.length, reader.getDocumentCount());
+            for (int i = 0; i < names.length; i++) {
+                assertEquals(names[i], reader.get(i));
+                assertEquals(i, reader.getDocumentNumber(names[i]));
+            }
+
+            assertEquals("unknown", reader.get(-1));
+            assertEquals("unknown", reader.get(names.length));
+            assertEquals(-1, reader.getDocumentNumber("WTX-B01-9999"));
+            assertEquals(-1, reader.getDocumentNumber("WTX-B01-000"));
+            assertEquals(-1, reader.getDocumentNumber("zzz"));
+
+            reader.close();
+            temporary.delete();
+        }
+    }
+
+    public void testEmpty() throws IOException {
+        File temporary = writeNames(new String[0], 16);
+        PackedDocumentNameReader reader = new PackedDocumentNameReader(temporary.toString());
+        assertEquals(0, reader.getDocumentCount());
+        assertEquals(-1, reader.getDocumentNumber("DOC1"));
+        reader.close();
+        temporary.delete();
+    }
+
+    public void testRejectsOtherFiles() throws IOException {
+        File temporary = Utility.createTemporary();
+        Parameters p = new Parameters();
+        p.add("filename", temporary.toString());
+        DocumentNameWriter writer = new DocumentNameWriter(new FakeParameters(p));
+        for (int i = 0; i < 10; i++) {
+            writer.process(new NumberedDocumentData("DOC-" + i, "", i, 10));
+        }
+        writer.close();
+
+        assertFalse(PackedDocumentNameReader.isPackedNamesFile(temporary.toString()));
+        try {
+            new PackedDocumentNameReader(temporary.toString());
+            fail("Expected an IOException");
+        } catch (IOException e) {
+        }
+        temporary.delete();
+    }
+}
@@ -0,0 +1,95 @@
+// BSD License (http://www.galagosearch.org/license)
+
+package org.galagosearch.core.index;
+
+import java.io.File;
+import java.io.IOException;
+import junit.framework.TestCase;
+import org.galagosearch.core.retrieval.StructuredRetrievalTest;
+import org.galagosearch.core.retrieval.query.Node;
+import org.galagosearch.core.retrieval.structured.CountIterator;
+import org.galagosearch.core.types.NumberedDocumentData;
+import org.galagosearch.tupleflow.FakeParameters;
+import org.galagosearch.tupleflow.Parameters;
+import org.galagosearch.tupleflow.Utility;
+
+/**
+ *
+ * @author trevor
+ */
+public class StructuredIndexTest extends TestCase {
+    File indexPath;
+
+    public StructuredIndexTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    public void setUp() throws IOException {
+        indexPath = StructuredRetrievalTest.makeIndex();
+    }
+
+    @Override
+    public void tearDown() throws IOException {
+        Utility.deleteDirectory(indexPath);
+    }
+
+    private int countLoaded(StructuredIndex index) {
+        int loaded = 0;
+        for (IndexReader reader : index.partReaders.values()) {
+            if (reader.vocabularyLoaded) {
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    public void testPartsOpenOnFirstUse() throws IOException {
+        StructuredIndex index = new StructuredIndex(indexPath.toString());
+        assertTrue(index.partReaders.size() > 0);
+        assertEquals(0, countLoaded(index));
+        assertNull(index.documentNames);
+
+        CountIterator iterator = (CountIterator) index.getIterator(new Node("counts", "a"));
+        assertFalse(iterator.isDone());
+        assertEquals(1, countLoaded(index));
+        assertEquals("DOC1", index.getDocumentName(1));
+        index.close();
+    }
+
+    public void testPreload() throws IOException {
+        Parameters parameters = new Parameters();
+        parameters.add("preloadParts", "true");
+        parameters.add("preloadThreads", "2");
+        StructuredIndex index = new StructuredIndex(indexPath.toString(), parameters);
+
+        assertEquals(index.partReaders.size(), countLoaded(index));
+        assertNotNull(index.documentNames);
+        assertEquals("DOC1", index.getDocumentName(1));
+        index.close();
+    }
+
+    public void testDocumentNumbers() throws IOException {
+        StructuredIndex index = new StructuredIndex(indexPath.toString());
+        assertEquals(5, index.getDocumentNumber("DOC5"));
+        assertEquals(-1, index.getDocumentNumber("DOC99"));
+        assertNull(index.packedDocumentNames);
+        index.close();
+
+        Parameters p = new Parameters();
+        p.add("filename", indexPath + File.separator + "documentNameIndex");
+        PackedDocumentNameWriter writer = new PackedDocumentNameWriter(new FakeParameters(p));
+        for (int i = 0; i < 20; i++) {
+            writer.process(new NumberedDocumentData("DOC" + i, "", i, 100));
+        }
+        writer.close();
+
+        index = new StructuredIndex(indexPath.toString());
+        assertEquals(5, index.getDocumentNumber("DOC5"));
+        assertEquals(-1, index.getDocumentNumber("DOC99"));
+        assertEquals("DOC12", index.getDocumentName(12));
+        assertNotNull(index.packedDocumentNames);
+        assertNull(index.documentNames);
+        index.close();
+    }
+}
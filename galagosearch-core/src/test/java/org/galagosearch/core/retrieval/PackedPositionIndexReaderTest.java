@@ -0,0 +1,166 @@
+// BSD License (http://www.galagosearch.org/license)
+package org.galagosearch.core.retrieval;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Random;
+import junit.framework.TestCase;
+import org.galagosearch.core.index.PackedPositionIndexReader;
+import org.galagosearch.core.index.PackedPositionIndexWriter;
+import org.galagosearch.core.util.ExtentArray;
+import org.galagosearch.tupleflow.FakeParameters;
+import org.galagosearch.tupleflow.Parameters;
+import org.galagosearch.tupleflow.Utility;
+
+/**
+ *
+ * @author trevor
+ */
+public class PackedPositionIndexReaderTest extends TestCase {
+    File tempPath;
+    // each entry is {document, position, position, ...}
+    ArrayList<int[]> postingsA;
+    ArrayList<int[]> postingsB;
+
+    public PackedPositionIndexReaderTest(String testName) {
+        super(testName);
+    }
+
+    private ArrayList<int[]> makePostings(Random random, int documentCount, int maxPositions) {
+        ArrayList<int[]> postings = new ArrayList<int[]>();
+        int document = 0;
+
+        for (int i = 0; i < documentCount; i++) {
+            document += 1 + random.nextInt(20);
+            int[] posting = new int[1 + 1 + random.nextInt(maxPositions)];
+            posting[0] = document;
+            int position = random.nextInt(3);
+            for (int j = 1; j < posting.length; j++) {
+                posting[j] = position;
+                position += 1 + random.nextInt(1000);
+            }
+            postings.add(posting);
+        }
+        return postings;
+    }
+
+    private void write(PackedPositionIndexWriter writer, String word, ArrayList<int[]> postings)
+            throws Exception {
+        writer.processWord(Utility.makeBytes(word));
+        for (int[] posting : postings) {
+            writer.processDocument(posting[0]);
+            for (int i = 1; i < posting.length; i++) {
+                writer.processPosition(posting[i]);
+            }
+        }
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        tempPath = File.createTempFile("galago-test-index", null);
+        tempPath.delete();
+
+        Random random = new Random(7);
+        postingsA = makePostings(random, 1000, 4);
+        // many positions per document, so position sections span several packs
+        postingsB = makePostings(random, 300, 300);
+
+        Parameters p = new Parameters();
+        p.add("filename", tempPath.toString());
+        PackedPositionIndexWriter writer = new PackedPositionIndexWriter(new FakeParameters(p));
+        write(writer, "a", postingsA);
+        write(writer, "b", postingsB);
+        writer.close();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        tempPath.delete();
+    }
+
+    private void checkPosting(int[] posting, PackedPositionIndexReader.Iterator iterator) {
+        assertFalse(iterator.isDone());
+        assertEquals(posting[0], iterator.document());
+        assertEquals(posting.length - 1, iterator.count());
+
+        ExtentArray extents = iterator.extents();
+        assertEquals(posting.length - 1, extents.getPosition());
+        for (int i = 1; i < posting.length; i++) {
+            assertEquals(posting[0], extents.getBuffer()[i - 1].document);
+            assertEquals(posting[i], extents.getBuffer()[i - 1].begin);
+            assertEquals(posting[i] + 1, extents.getBuffer()[i - 1].end);
+        }
+    }
+
+    private void checkIteration(ArrayList<int[]> postings, PackedPositionIndexReader.Iterator iterator)
+            throws Exception {
+        for (int[] posting : postings) {
+            checkPosting(posting, iterator);
+            iterator.nextDocument();
+        }
+        assertTrue(iterator.isDone());
+    }
+
+    public void testIteration() throws Exception {
+        PackedPositionIndexReader reader = new PackedPositionIndexReader(tempPath.toString());
+        checkIteration(postingsA, reader.getTermExtents("a"));
+        checkIteration(postingsB, reader.getTermExtents("b"));
+        assertNull(reader.getTermExtents("c"));
+        reader.close();
+    }
+
+    public void testStatistics() throws Exception {
+        PackedPositionIndexReader reader = new PackedPositionIndexReader(tempPath.toString());
+        PackedPositionIndexReader.Iterator iterator = reader.getTermExtents("b");
+
+        long total = 0;
+        long maximum = 0;
+        for (int[] posting : postingsB) {
+            total += posting.length - 1;
+            maximum = Math.max(maximum, posting.length - 1);
+        }
+
+        assertEquals(postingsB.size(), iterator.documentFrequency());
+        assertEquals(total, iterator.collectionFrequency());
+        assertEquals(maximum, iterator.maximumCount());
+        reader.close();
+    }
+
+    public void testSkipToDocument() throws Exception {
+        PackedPositionIndexReader reader = new PackedPositionIndexReader(tempPath.toString());
+        PackedPositionIndexReader.Iterator iterator = reader.getTermExtents("a");
+        Random random = new Random(11);
+
+        int index = 0;
+        while (true) {
+            index += 1 + random.nextInt(200);
+            if (index >= postingsA.size()) {
+                break;
+            }
+
+            int[] posting = postingsA.get(index);
+            assertTrue(iterator.skipToDocument(posting[0]));
+            checkPosting(posting, iterator);
+        }
+
+        int last = postingsA.get(postingsA.size() - 1)[0];
+        assertFalse(iterator.skipToDocument(last + 1));
+        assertTrue(iterator.isDone());
+
+        iterator.reset();
+        checkIteration(postingsA, iterator);
+        reader.close();
+    }
+
+    public void testNextRecord() throws Exception {
+        PackedPositionIndexReader reader = new PackedPositionIndexReader(tempPath.toString());
+        PackedPositionIndexReader.Iterator iterator = reader.getIterator();
+
+        int records = 1;
+        while (iterator.nextRecord()) {
+            records++;
+        }
+        assertEquals(postingsA.size() + postingsB.size(), records);
+        reader.close();
+    }
+}
@@ -6,6 +6,7 @@
  */
 package org.galagosearch.core.retrieval;
 
+import org.galagosearch.core.index.IndexReader;
 import org.galagosearch.core.index.PositionIndexReader;
 import org.galagosearch.tupleflow.Utility;
 import org.galagosearch.core.index.PositionIndexWriter;
@@ -14,6 +15,9 @@ import org.galagosearch.tupleflow.Parameters;
 import org.galagosearch.core.util.ExtentArray;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import junit.framework.TestCase;
 
 /**
@@ -115,4 +119,148 @@ public class PositionIndexReaderTest extends TestCase {
         internalTestIterator(termExtents, dataB);
         reader.close();
     }
+
+    public void testListStatistics() throws Exception {
+        PositionIndexReader reader = new PositionIndexReader(tempPath.toString());
+        PositionIndexReader.Iterator termExtents = reader.getTermExtents("a");
+        assertEquals(2, termExtents.documentFrequency());
+        assertEquals(4, termExtents.collectionFrequency());
+
+        termExtents = reader.getTermExtents("b");
+        assertEquals(2, termExtents.documentFrequency());
+        assertEquals(3, termExtents.collectionFrequency());
+        reader.close();
+    }
+
+    /**
+     * Writes a single list where document 3*i contains the term at
+     * positions i and i+2, with a skip entry every 10 documents.
+     */
+    public File writeSkipIndex() throws Exception {
+        File skipPath = File.createTempFile("galago-test-index", null);
+        skipPath.delete();
+
+        Parameters p = new Parameters();
+        p.add("filename", skipPath.toString());
+        p.add("skipDistance", "10");
+
+        PositionIndexWriter writer =
+                new PositionIndexWriter(new org.galagosearch.tupleflow.FakeParameters(p));
+
+        writer.processWord(Utility.makeBytes("c"));
+        for (int i = 0; i < 500; i++) {
+            writer.processDocument(3 * i);
+            writer.processPosition(i);
+            writer.processPosition(i + 2);
+        }
+        writer.close();
+        return skipPath;
+    }
+
+    public void testSkipToDocument() throws Exception {
+        File skipPath = writeSkipIndex();
+        PositionIndexReader reader = new PositionIndexReader(skipPath.toString());
+        PositionIndexReader.Iterator termExtents = reader.getTermExtents("c");
+
+        int[] targets = {0, 1, 29, 30, 31, 33, 299, 300, 301, 900, 1201, 1497};
+        for (int target : targets) {
+            int expected = ((target + 2) / 3) * 3;
+            assertEquals(target == expected, termExtents.skipToDocument(target));
+            assertEquals(expected, termExtents.document());
+            assertEquals(2, termExtents.count());
+            assertEquals(expected / 3, termExtents.extents().getBuffer()[0].begin);
+            assertEquals(expected / 3 + 2, termExtents.extents().getBuffer()[1].begin);
+        }
+
+        termExtents.nextDocument();
+        assertTrue(termExtents.isDone());
+
+        termExtents.reset();
+        assertFalse(termExtents.skipToDocument(1500));
+        assertTrue(termExtents.isDone());
+
+        reader.close();
+        skipPath.delete();
+    }
+
+    public void testMappedSkipToDocument() throws Exception {
+        File skipPath = writeSkipIndex();
+        PositionIndexReader reader =
+                new PositionIndexReader(new IndexReader(skipPath.toString(), true));
+        PositionIndexReader.Iterator termExtents = reader.getTermExtents("c");
+
+        assertEquals(500, termExtents.documentFrequency());
+        for (int target = 0; target < 1500; target += 21) {
+            assertTrue(termExtents.skipToDocument(target));
+            assertEquals(target, termExtents.document());
+            assertEquals(target / 3, termExtents.extents().getBuffer()[0].begin);
+            assertEquals(target / 3 + 2, termExtents.extents().getBuffer()[1].begin);
+        }
+
+        reader.close();
+        skipPath.delete();
+    }
+
+    public void testConcurrentIterators() throws Exception {
+        File skipPath = writeSkipIndex();
+        final PositionIndexReader reader = new PositionIndexReader(skipPath.toString());
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        Thread[] threads = new Thread[8];
+
+        for (int t = 0; t < threads.length; t++) {
+            final int stride = t + 1;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int round = 0; round < 20; round++) {
+                            PositionIndexReader.Iterator termExtents = reader.getTermExtents("c");
+                            for (int target = 0; target < 1500; target += 3 * stride) {
+                                assertTrue(termExtents.skipToDocument(target));
+                                assertEquals(target, termExtents.document());
+                                assertEquals(target / 3, termExtents.extents().getBuffer()[0].begin);
+                                assertEquals(target / 3 + 2, termExtents.extents().getBuffer()[1].begin);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        reader.close();
+        skipPath.delete();
+        assertEquals(errors.toString(), 0, errors.size());
+    }
+
+    public void testExtentsOfSomeDocuments() throws Exception {
+        File skipPath = writeSkipIndex();
+        PositionIndexReader reader = new PositionIndexReader(skipPath.toString());
+        PositionIndexReader.Iterator termExtents = reader.getTermExtents("c");
+
+        // only look at the positions of every seventh document
+        for (int i = 0; i < 500; i++) {
+            assertFalse(termExtents.isDone());
+            assertEquals(3 * i, termExtents.document());
+            assertEquals(2, termExtents.count());
+
+            if (i % 7 == 0) {
+                ExtentArray extents = termExtents.extents();
+                assertEquals(2, extents.getPosition());
+                assertEquals(i, extents.getBuffer()[0].begin);
+                assertEquals(i + 2, extents.getBuffer()[1].begin);
+            }
+            termExtents.nextDocument();
+        }
+
+        assertTrue(termExtents.isDone());
+        reader.close();
+        skipPath.delete();
+    }
 }
@@ -7,7 +7,9 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Random;
 import junit.framework.TestCase;
+import org.galagosearch.core.retrieval.structured.ResultCache;
 import org.galagosearch.core.retrieval.structured.StructuredRetrieval;
 import org.galagosearch.core.index.DocumentLengthsWriter;
 import org.galagosearch.core.index.DocumentNameWriter;
@@ -116,6 +118,79 @@ public class StructuredRetrievalTest extends TestCase {
         return tempPath;
     }
 
+    /**
+     * Builds an index of random documents over the terms a through e, where
+     * each term is about twice as common as the one before it.
+     */
+    public static File makeRandomIndex(Random random, int documentCount) throws IOException {
+        File tempPath = File.createTempFile("galago-test-index", null);
+        tempPath.delete();
+        tempPath.mkdir();
+
+        String partsPath = tempPath.toString() + File.separator + "parts";
+        new File(partsPath).mkdir();
+
+        int[] lengths = new int[documentCount];
+        long collectionLength = 0;
+        for (int i = 0; i < documentCount; i++) {
+            lengths[i] = 1 + random.nextInt(300);
+            collectionLength += lengths[i];
+        }
+
+        Parameters pp = new Parameters();
+        pp.add("filename", partsPath + File.separator + "terms");
+        pp.add("skipDistance", "16");
+        PositionIndexWriter pwriter = new PositionIndexWriter(new FakeParameters(pp));
+        String[] terms = { "a", "b", "c", "d", "e" };
+
+        for (int t = 0; t < terms.length; t++) {
+            pwriter.processWord(Utility.makeBytes(terms[t]));
+            double probability = 0.01 * (1 << t);
+
+            for (int i = 0; i < documentCount; i++) {
+                if (random.nextDouble() >= probability) {
+                    continue;
+                }
+
+                int count = 1 + random.nextInt(Math.min(lengths[i], 1 + random.nextInt(12)));
+                pwriter.processDocument(i);
+                for (int j = 0; j < count; j++) {
+                    pwriter.processPosition(j);
+                }
+            }
+        }
+        pwriter.close();
+
+        Parameters dnp = new Parameters();
+        dnp.add("filename", tempPath + File.separator + "documentNames");
+        DocumentNameWriter dnWriter = new DocumentNameWriter(new FakeParameters(dnp));
+        Parameters lp = new Parameters();
+        lp.add("filename", tempPath + File.separator + "documentLengths");
+        DocumentLengthsWriter lWriter = new DocumentLengthsWriter(new FakeParameters(lp));
+
+        for (int i = 0; i < documentCount; i++) {
+            NumberedDocumentData data = new NumberedDocumentData("DOC" + i, "", i, lengths[i]);
+            dnWriter.process(data);
+            lWriter.process(data);
+        }
+        dnWriter.close();
+        lWriter.close();
+
+        Parameters mainParameters = new Parameters();
+        mainParameters.add("collectionLength", Long.toString(collectionLength));
+        mainParameters.add("documentCount", Integer.toString(documentCount));
+        mainParameters.write(tempPath + File.separator + "manifest");
+        return tempPath;
+    }
+
+    public static Node makeDirichletFeature(String term) {
+        ArrayList<Node> children = new ArrayList<Node>();
+        children.add(new Node("counts", term));
+        Parameters p = new Parameters();
+        p.add("default", "dirichlet");
+        return new Node("feature", p, children, 0);
+    }
+
     @Override
     public void setUp() throws IOException {
         this.tempPath = makeIndex();
@@ -191,4 +266,259 @@ public class StructuredRetrievalTest extends TestCase {
             lastScore = score;
         }
     }
+
+    public void testPruningMatchesExhaustive() throws Exception {
+        File randomPath = makeRandomIndex(new Random(42), 5000);
+
+        try {
+            Parameters pruned = new Parameters();
+            pruned.add("pruning", "true");
+            StructuredRetrieval exhaustiveRetrieval =
+                    new StructuredRetrieval(randomPath.toString(), new Parameters());
+            StructuredRetrieval prunedRetrieval =
+                    new StructuredRetrieval(randomPath.toString(), pruned);
+
+            String[][] queries = {
+                { "a", "e" },
+                { "a", "b", "c" },
+                { "e", "d", "c", "b", "a" },
+                { "b", "scaled-d" }
+            };
+            int[] requestedCounts = { 1, 5, 10, 100, 10000 };
+
+            for (String[] terms : queries) {
+                for (int requested : requestedCounts) {
+                    ArrayList<Node> children = new ArrayList<Node>();
+                    for (String term : terms) {
+                        if (term.startsWith("scaled-")) {
+                            ArrayList<Node> scaled = new ArrayList<Node>();
+                            scaled.add(makeDirichletFeature(term.substring(7)));
+                            Parameters p = new Parameters();
+                            p.add("weight", "0.5");
+                            children.add(new Node("scale", p, scaled, 0));
+                        } else {
+                            children.add(makeDirichletFeature(term));
+                        }
+                    }
+                    Node root = new Node("combine", children);
+
+                    ScoredDocument[] expected = exhaustiveRetrieval.runQuery(root, requested);
+                    ScoredDocument[] actual = prunedRetrieval.runQuery(root, requested);
+
+                    assertEquals(expected.length, actual.length);
+                    for (int i = 0; i < expected.length; i++) {
+                        assertEquals(expected[i].document, actual[i].document);
+                        assertEquals(expected[i].score, actual[i].score, 0.0);
+                    }
+                }
+            }
+
+            exhaustiveRetrieval.close();
+            prunedRetrieval.close();
+        } finally {
+            Utility.deleteDirectory(randomPath);
+        }
+    }
+
+    private static Node makeWindowFeature(String operator, int width, String... terms) {
+        ArrayList<Node> extents = new ArrayList<Node>();
+        for (String term : terms) {
+            extents.add(new Node("extents", term));
+        }
+        Parameters wp = new Parameters();
+        wp.add("default", Integer.toString(width));
+        ArrayList<Node> window = new ArrayList<Node>();
+        window.add(new Node(operator, wp, extents, 0));
+
+        Parameters fp = new Parameters();
+        fp.add("default", "dirichlet");
+        return new Node("feature", fp, window, 0);
+    }
+
+    public void testSharedIteratorsMatchUnshared() throws Exception {
+        File randomPath = makeRandomIndex(new Random(7), 3000);
+
+        try {
+            Parameters unshared = new Parameters();
+            unshared.add("shareIterators", "false");
+            StructuredRetrieval sharedRetrieval =
+                    new StructuredRetrieval(randomPath.toString(), new Parameters());
+            StructuredRetrieval unsharedRetrieval =
+                    new StructuredRetrieval(randomPath.toString(), unshared);
+
+            // a sequential dependence query over c, d and e
+            ArrayList<Node> children = new ArrayList<Node>();
+            for (String term : new String[] { "c", "d", "e" }) {
+                ArrayList<Node> extents = new ArrayList<Node>();
+                extents.add(new Node("extents", term));
+                Parameters fp = new Parameters();
+                fp.add("default", "dirichlet");
+                children.add(new Node("feature", fp, extents, 0));
+            }
+            children.add(makeWindowFeature("od", 1, "c", "d"));
+            children.add(makeWindowFeature("od", 1, "d", "e"));
+            children.add(makeWindowFeature("uw", 8, "c", "d"));
+            children.add(makeWindowFeature("uw", 8, "d", "e"));
+            Node root = new Node("combine", children);
+
+            ScoredDocument[] expected = unsharedRetrieval.runQuery(root, 100);
+            ScoredDocument[] actual = sharedRetrieval.runQuery(root, 100);
+
+            assertEquals(100, expected.length);
+            assertEquals(expected.length, actual.length);
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i].document, actual[i].document);
+                assertEquals(expected[i].score, actual[i].score, 0.0);
+            }
+
+            sharedRetrieval.close();
+            unsharedRetrieval.close();
+        } finally {
+            Utility.deleteDirectory(randomPath);
+        }
+    }
+
+    private static Node makeScaledCombine(double weight, ArrayList<Node> children) {
+        ArrayList<Node> combine = new ArrayList<Node>();
+        combine.add(new Node("combine", children));
+        Parameters p = new Parameters();
+        p.add("weight", Double.toString(weight));
+        return new Node("scale", p, combine, 0);
+    }
+
+    public void testSequentialDependenceMatchesExpandedQuery() throws Exception {
+        File randomPath = makeRandomIndex(new Random(11), 3000);
+
+        try {
+            StructuredRetrieval retrieval =
+                    new StructuredRetrieval(randomPath.toString(), new Parameters());
+            String[] terms = { "e", "c", "d", "c" };
+
+            ArrayList<Node> unigrams = new ArrayList<Node>();
+            ArrayList<Node> ordered = new ArrayList<Node>();
+            ArrayList<Node> unordered = new ArrayList<Node>();
+            ArrayList<Node> sdmTerms = new ArrayList<Node>();
+            for (int i = 0; i < terms.length; i++) {
+                ArrayList<Node> extents = new ArrayList<Node>();
+                extents.add(new Node("extents", terms[i]));
+                unigrams.add(new Node("feature", "dirichlet", extents, 0));
+                sdmTerms.add(new Node("extents", terms[i]));
+
+                if (i > 0) {
+                    ordered.add(makeWindowFeature("od", 1, terms[i - 1], terms[i]));
+                    unordered.add(makeWindowFeature("uw", 8, terms[i - 1], terms[i]));
+                }
+            }
+
+            ArrayList<Node> children = new ArrayList<Node>();
+            children.add(makeScaledCombine(0.85, unigrams));
+            children.add(makeScaledCombine(0.10, ordered));
+            children.add(makeScaledCombine(0.05, unordered));
+            Node expanded = new Node("combine", children);
+            Node sdm = new Node("sdm", sdmTerms);
+
+            ScoredDocument[] expected = retrieval.runQuery(expanded, 3000);
+            ScoredDocument[] actual = retrieval.runQuery(sdm, 3000);
+
+            assertTrue(expected.length > 100);
+            assertEquals(expected.length, actual.length);
+            HashMap<Integer, Double> expectedScores = new HashMap<Integer, Double>();
+            for (ScoredDocument document : expected) {
+                expectedScores.put(document.document, document.score);
+            }
+            for (ScoredDocument document : actual) {
+                double score = expectedScores.get(document.document);
+                assertEquals(score, document.score, 1e-4 * Math.abs(score));
+            }
+
+            retrieval.close();
+        } finally {
+            Utility.deleteDirectory(randomPath);
+        }
+    }
+
+    public void testParallelMatchesSerial() throws Exception {
+        File randomPath = makeRandomIndex(new Random(5), 6000);
+
+        try {
+            for (String pruning : new String[] { "false", "true" }) {
+                Parameters serial = new Parameters();
+                serial.add("pruning", pruning);
+                Parameters parallel = new Parameters();
+                parallel.add("pruning", pruning);
+                parallel.add("queryThreads", "4");
+
+                StructuredRetrieval serialRetrieval =
+                        new StructuredRetrieval(randomPath.toString(), serial);
+                StructuredRetrieval parallelRetrieval =
+                        new StructuredRetrieval(randomPath.toString(), parallel);
+
+                ArrayList<Node> terms = new ArrayList<Node>();
+                ArrayList<Node> features = new ArrayList<Node>();
+                for (String term : new String[] { "a", "c", "e" }) {
+                    terms.add(new Node("extents", term));
+                    features.add(makeDirichletFeature(term));
+                }
+                Node[] queries = { new Node("combine", features), new Node("sdm", terms) };
+
+                for (Node root : queries) {
+                    for (int requested : new int[] { 1, 10, 1000 }) {
+                        ScoredDocument[] expected = serialRetrieval.runQuery(root, requested);
+                        ScoredDocument[] actual = parallelRetrieval.runQuery(root, requested);
+
+                        assertEquals(expected.length, actual.length);
+                        for (int i = 0; i < expected.length; i++) {
+                            assertEquals(expected[i].document, actual[i].document);
+                            assertEquals(expected[i].score, actual[i].score, 0.0);
+                        }
+                    }
+                }
+
+                serialRetrieval.close();
+                parallelRetrieval.close();
+            }
+        } finally {
+            Utility.deleteDirectory(randomPath);
+        }
+    }
+
+    public void testResultCache() throws Exception {
+        File randomPath = makeRandomIndex(new Random(3), 2000);
+
+        try {
+            Parameters cached = new Parameters();
+            cached.add("resultCacheSize", "10");
+            cached.add("resultCacheDepth", "50");
+            StructuredRetrieval cachedRetrieval =
+                    new StructuredRetrieval(randomPath.toString(), cached);
+            StructuredRetrieval plainRetrieval =
+                    new StructuredRetrieval(randomPath.toString(), new Parameters());
+            ResultCache cache = cachedRetrieval.getResultCache();
+
+            ArrayList<Node> children = new ArrayList<Node>();
+            children.add(makeDirichletFeature("b"));
+            children.add(makeDirichletFeature("d"));
+            Node root = new Node("combine", children);
+
+            // the first page is a miss, the deeper pages are hits
+            for (int requested : new int[] { 10, 20, 50, 100 }) {
+                ScoredDocument[] expected = plainRetrieval.runQuery(root, requested);
+                ScoredDocument[] actual = cachedRetrieval.runQuery(root, requested);
+
+                assertEquals(expected.length, actual.length);
+                for (int i = 0; i < expected.length; i++) {
+                    assertEquals(expected[i].document, actual[i].document);
+                    assertEquals(expected[i].score, actual[i].score, 0.0);
+                }
+            }
+            assertEquals(2, cache.getHits());
+            assertEquals(1, cache.getMisses());
+
+            cachedRetrieval.close();
+            plainRetrieval.close();
+            assertEquals(0, cache.size());
+        } finally {
+            Utility.deleteDirectory(randomPath);
+        }
+    }
 }
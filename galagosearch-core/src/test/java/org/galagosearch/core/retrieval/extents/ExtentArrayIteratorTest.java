@@ -54,4 +54,53 @@ public class ExtentArrayIteratorTest extends TestCase {
         instance.next();
         assertTrue( instance.isDone() );
     }
+
+    public void testReset() {
+        ExtentArray first = new ExtentArray();
+        first.add( 1, 5, 7 );
+        ExtentArray second = new ExtentArray();
+        second.add( 2, 3, 4 );
+        second.add( 2, 8, 9 );
+
+        ExtentArrayIterator instance = new ExtentArrayIterator();
+        instance.reset( first );
+        assertEquals( 5, instance.currentBegin() );
+        assertFalse( instance.next() );
+
+        instance.reset( second );
+        assertFalse( instance.isDone() );
+        assertEquals( 2, instance.currentDocument() );
+        assertEquals( 3, instance.currentBegin() );
+        assertEquals( 4, instance.currentEnd() );
+        assertTrue( instance.next() );
+        assertEquals( 1, instance.currentIndex() );
+        assertEquals( 8, instance.currentBegin() );
+    }
+
+    public void testWeightsAndGrowth() {
+        ExtentArray array = new ExtentArray( 2 );
+        array.add( 1, 0, 1 );
+        array.add( 1, 1, 2, 0.5 );
+        for( int i=2; i<40; i++ ) {
+            array.add( 1, i, i+1 );
+        }
+
+        assertEquals( 40, array.getPosition() );
+        assertEquals( 1.0, array.weight( 0 ) );
+        assertEquals( 0.5, array.weight( 1 ) );
+        assertEquals( 1.0, array.weight( 39 ) );
+        assertEquals( 39, array.begin( 39 ) );
+        assertEquals( 40, array.end( 39 ) );
+
+        // weights don't survive a reset
+        array.reset();
+        array.add( 2, 3, 4 );
+        assertEquals( 1.0, array.weight( 0 ) );
+
+        ExtentArray copy = new ExtentArray();
+        copy.add( array, 0 );
+        assertEquals( 2, copy.document( 0 ) );
+        assertEquals( 3, copy.begin( 0 ) );
+        assertEquals( 4, copy.end( 0 ) );
+    }
 }
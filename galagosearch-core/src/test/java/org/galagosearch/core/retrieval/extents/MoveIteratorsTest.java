@@ -5,8 +5,11 @@
 
 package org.galagosearch.core.retrieval.extents;
 
+import org.galagosearch.core.retrieval.structured.AggregateIterator;
 import org.galagosearch.core.retrieval.structured.ExtentIterator;
 import org.galagosearch.core.retrieval.structured.MoveIterators;
+import org.galagosearch.core.retrieval.structured.OrderedWindowIterator;
+import org.galagosearch.tupleflow.Parameters;
 import java.io.IOException;
 import java.util.ArrayList;
 import junit.framework.TestCase;
@@ -61,4 +64,61 @@ public class MoveIteratorsTest extends TestCase {
         iterators[1].nextDocument();
         assertEquals(Integer.MAX_VALUE, MoveIterators.findMaximumDocument(iterators));
     }
+
+    static class FakeListIterator extends FakeExtentIterator implements AggregateIterator {
+        FakeListIterator(int[][] data) {
+            super(data);
+        }
+
+        public long documentFrequency() {
+            return data.length;
+        }
+
+        public long collectionFrequency() {
+            return 0;
+        }
+
+        public long maximumCount() {
+            return 0;
+        }
+    }
+
+    public void testSortByDocumentCount() throws Exception {
+        ExtentIterator unknown = new FakeExtentIterator(new int[][] { {1,1} });
+        ExtentIterator common = new FakeListIterator(new int[][] { {1,1}, {2,1}, {3,1} });
+        ExtentIterator rare = new FakeListIterator(new int[][] { {3,2} });
+        ExtentIterator[] query = { unknown, common, rare };
+
+        ExtentIterator[] sorted = MoveIterators.sortByDocumentCount(query);
+        assertSame(rare, sorted[0]);
+        assertSame(common, sorted[1]);
+        assertSame(unknown, sorted[2]);
+        assertSame(unknown, query[0]);
+
+        Parameters parameters = new Parameters();
+        parameters.add("width", "1");
+        OrderedWindowIterator window = new OrderedWindowIterator(parameters,
+                new ExtentIterator[] { common, rare });
+        assertEquals(1, MoveIterators.estimateDocumentCount(window));
+    }
+
+    public void testOrderedWindowKeepsQueryOrder() throws Exception {
+        // the rarest term is last, but the phrase must still be matched in order
+        ExtentIterator common = new FakeListIterator(new int[][] { {1,4}, {2,7}, {4,1}, {6,3}, {8,5} });
+        ExtentIterator rare = new FakeListIterator(new int[][] { {6,4}, {8,4} });
+
+        Parameters parameters = new Parameters();
+        parameters.add("width", "1");
+        OrderedWindowIterator window = new OrderedWindowIterator(parameters,
+                new ExtentIterator[] { common, rare });
+
+        assertFalse(window.isDone());
+        assertEquals(6, window.document());
+        assertEquals(3, window.extents().begin(0));
+        assertEquals(5, window.extents().end(0));
+
+        // in document 8 the words are in the wrong order
+        window.nextDocument();
+        assertTrue(window.isDone());
+    }
 }
@@ -6,6 +6,7 @@
  */
 package org.galagosearch.core.retrieval.extents;
 
+import org.galagosearch.core.retrieval.structured.ExtentIterator;
 import org.galagosearch.core.retrieval.structured.OrderedWindowIterator;
 import org.galagosearch.tupleflow.Parameters;
 import org.galagosearch.core.util.ExtentArray;
@@ -54,4 +55,32 @@ public class OrderedWindowIteratorTest extends TestCase {
         ExtentArray array = instance.extents();
         assertEquals(0, array.getPosition());
     }
+
+    public void testSkipToDocument() throws IOException {
+        int[][] dataOne = {{1, 3}, {2, 5}, {5, 7}, {9, 1}, {12, 4}};
+        int[][] dataTwo = {{1, 4}, {2, 9}, {5, 8}, {9, 2}, {12, 5}};
+        int[][] dataThree = {{1, 5}, {5, 9}, {9, 3}, {12, 9}};
+
+        Parameters oneParam = new Parameters();
+        oneParam.add("width", "1");
+        OrderedWindowIterator inner = new OrderedWindowIterator(oneParam,
+                new FakeExtentIterator[] { new FakeExtentIterator(dataOne),
+                                           new FakeExtentIterator(dataTwo) });
+        OrderedWindowIterator outer = new OrderedWindowIterator(oneParam,
+                new ExtentIterator[] { inner, new FakeExtentIterator(dataThree) });
+
+        // phrases are in 1, 5, 9 and 12; the outer window is in 1, 5 and 9
+        assertEquals(1, outer.document());
+        assertFalse(outer.skipToDocument(3));
+        assertEquals(5, outer.document());
+        assertEquals(7, outer.extents().begin(0));
+        assertEquals(10, outer.extents().end(0));
+
+        assertTrue(outer.skipToDocument(5));
+        assertTrue(outer.skipToDocument(9));
+        assertEquals(1, outer.extents().begin(0));
+
+        assertFalse(outer.skipToDocument(10));
+        assertTrue(outer.isDone());
+    }
 }
@@ -71,4 +71,26 @@ public class SynonymIteratorTest extends TestCase {
         instance.nextDocument();
         assertTrue(instance.isDone());
     }
+
+    public void testSkipToDocument() throws IOException {
+        int[][] dataOne = {{1, 3}, {4, 2}, {8, 6}};
+        int[][] dataTwo = {{2, 4}, {6, 1}, {8, 2}};
+        FakeExtentIterator one = new FakeExtentIterator(dataOne);
+        FakeExtentIterator two = new FakeExtentIterator(dataTwo);
+        FakeExtentIterator[] iters = { one, two };
+
+        SynonymIterator instance = new SynonymIterator(new Parameters(), iters);
+        assertFalse(instance.skipToDocument(5));
+        assertEquals(6, instance.document());
+        assertEquals(1, instance.extents().getPosition());
+
+        assertTrue(instance.skipToDocument(8));
+        ExtentArray array = instance.extents();
+        assertEquals(2, array.getPosition());
+        assertEquals(2, array.begin(0));
+        assertEquals(6, array.begin(1));
+
+        assertFalse(instance.skipToDocument(9));
+        assertTrue(instance.isDone());
+    }
 }
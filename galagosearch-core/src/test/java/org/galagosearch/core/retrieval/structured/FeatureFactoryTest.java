@@ -62,6 +62,11 @@ public class FeatureFactoryTest extends TestCase {
         NodeType type = f.getNodeType(new Node("combine", ""));
         Class c = type.getIteratorClass();
         assertEquals(UnfilteredCombinationIterator.class.getName(), c.getName());
+
+        // the type, and the constructor it found, are reused
+        NodeType again = f.getNodeType(new Node("combine", ""));
+        assertSame(type, again);
+        assertSame(type.getConstructor(), again.getConstructor());
     }
 
     /**
@@ -0,0 +1,66 @@
+// BSD License (http://www.galagosearch.org/license)
+
+package org.galagosearch.core.retrieval.structured;
+
+import junit.framework.TestCase;
+import org.galagosearch.core.retrieval.ScoredDocument;
+
+/**
+ *
+ * @author trevor
+ */
+public class ResultCacheTest extends TestCase {
+    public ResultCacheTest(String testName) {
+        super(testName);
+    }
+
+    private static ScoredDocument[] makeResults(int count) {
+        ScoredDocument[] results = new ScoredDocument[count];
+        for (int i = 0; i < count; i++) {
+            results[i] = new ScoredDocument(i * 2, -i);
+        }
+        return results;
+    }
+
+    public void testDepth() {
+        ResultCache cache = new ResultCache(10, 20);
+        assertEquals(20, cache.getEvaluationDepth(1));
+        assertEquals(20, cache.getEvaluationDepth(20));
+        assertEquals(0, cache.getEvaluationDepth(21));
+
+        cache.put("q", makeResults(20));
+        ScoredDocument[] results = cache.get("q", 5);
+        assertEquals(5, results.length);
+        assertEquals(8, results[4].document);
+        assertEquals(-4.0, results[4].score);
+
+        assertEquals(20, cache.get("q", 20).length);
+        assertNull(cache.get("q", 21));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    public void testShortList() {
+        ResultCache cache = new ResultCache(10, 20);
+        cache.put("q", makeResults(3));
+        assertEquals(3, cache.get("q", 10).length);
+    }
+
+    public void testEviction() {
+        ResultCache cache = new ResultCache(2, 10);
+        cache.put("a", makeResults(1));
+        cache.put("b", makeResults(1));
+        assertNotNull(cache.get("a", 1));
+        cache.put("c", makeResults(1));
+
+        // b was used least recently
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b", 1));
+        assertNotNull(cache.get("a", 1));
+        assertNotNull(cache.get("c", 1));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get("a", 1));
+    }
+}
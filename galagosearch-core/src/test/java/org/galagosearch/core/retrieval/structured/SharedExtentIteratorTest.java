@@ -0,0 +1,166 @@
+// BSD License (http://www.galagosearch.org/license)
+
+package org.galagosearch.core.retrieval.structured;
+
+import java.io.IOException;
+import junit.framework.TestCase;
+import org.galagosearch.core.util.ExtentArray;
+
+/**
+ *
+ * @author trevor
+ */
+public class SharedExtentIteratorTest extends TestCase {
+    public SharedExtentIteratorTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * A list with documents 0, 3, 6, ..., where document 3i has i % 4 + 1
+     * positions, starting at i.
+     */
+    static class FakeList extends ExtentIterator implements AggregateIterator {
+        int length;
+        int index;
+        ExtentArray extents = new ExtentArray();
+
+        FakeList(int length) {
+            this.length = length;
+        }
+
+        public void nextDocument() {
+            index++;
+        }
+
+        public int document() {
+            return 3 * index;
+        }
+
+        public int count() {
+            return index % 4 + 1;
+        }
+
+        public ExtentArray extents() {
+            extents.reset();
+            for (int i = 0; i < count(); i++) {
+                extents.add(document(), index + i, index + i + 1);
+            }
+            return extents;
+        }
+
+        public boolean isDone() {
+            return index >= length;
+        }
+
+        public void reset() {
+            index = 0;
+        }
+
+        public long documentFrequency() {
+            return length;
+        }
+
+        public long collectionFrequency() {
+            return 0;
+        }
+
+        public long maximumCount() {
+            return 4;
+        }
+    }
+
+    static class FakeShared extends SharedExtentIterator {
+        int length;
+        int opened;
+
+        FakeShared(int length) {
+            super(null, null, new FakeList(length));
+            this.length = length;
+        }
+
+        @Override
+        ExtentIterator open() {
+            opened++;
+            return new FakeList(length);
+        }
+    }
+
+    private void assertAt(int i, ExtentIterator view) {
+        assertFalse(view.isDone());
+        assertEquals(3 * i, view.document());
+        assertEquals(i % 4 + 1, view.count());
+
+        ExtentArray extents = view.extents();
+        assertEquals(i % 4 + 1, extents.getPosition());
+        for (int j = 0; j < extents.getPosition(); j++) {
+            assertEquals(3 * i, extents.document(j));
+            assertEquals(i + j, extents.begin(j));
+        }
+    }
+
+    public void testViewsMoveTogether() throws IOException {
+        FakeShared shared = new FakeShared(10000);
+        SharedExtentIterator.View one = shared.newView();
+        SharedExtentIterator.View two = shared.newView();
+
+        for (int i = 0; i < 10000; i++) {
+            assertAt(i, one);
+            one.nextDocument();
+            assertAt(i, two);
+            two.nextDocument();
+        }
+
+        assertTrue(one.isDone());
+        assertTrue(two.isDone());
+        assertEquals(0, shared.opened);
+        assertEquals(10000, one.documentFrequency());
+    }
+
+    public void testSkip() throws IOException {
+        FakeShared shared = new FakeShared(100);
+        SharedExtentIterator.View one = shared.newView();
+        SharedExtentIterator.View two = shared.newView();
+
+        assertTrue(one.skipToDocument(30));
+        assertAt(10, one);
+        assertFalse(two.skipToDocument(29));
+        assertAt(10, two);
+        assertTrue(two.skipToDocument(30));
+        assertFalse(one.skipToDocument(1000));
+        assertTrue(one.isDone());
+        assertAt(10, two);
+        two.nextDocument();
+        assertAt(11, two);
+    }
+
+    public void testScanAndReset() throws IOException {
+        int length = 3 * SharedExtentIterator.MAXIMUM_LAG;
+        FakeShared shared = new FakeShared(length);
+        SharedExtentIterator.View slow = shared.newView();
+        SharedExtentIterator.View scan = shared.newView();
+
+        // scanning the whole list while another view waits at the start
+        // makes the scanning view read the list on its own
+        for (int i = 0; i < length; i++) {
+            assertAt(i, scan);
+            scan.nextDocument();
+        }
+        assertTrue(scan.isDone());
+        assertEquals(1, shared.opened);
+
+        // the start of the list is still buffered, so reset rejoins it
+        scan.reset();
+        for (int i = 0; i < length; i++) {
+            assertAt(i, slow);
+            slow.nextDocument();
+            assertAt(i, scan);
+            scan.nextDocument();
+        }
+        assertEquals(1, shared.opened);
+
+        // now the start is gone
+        slow.reset();
+        assertAt(0, slow);
+        assertEquals(2, shared.opened);
+    }
+}
@@ -0,0 +1,83 @@
+// BSD License (http://www.galagosearch.org/license)
+
+package org.galagosearch.core.retrieval.structured;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+import junit.framework.TestCase;
+import org.galagosearch.core.retrieval.ScoredDocument;
+
+/**
+ *
+ * @author trevor
+ */
+public class TopDocumentCollectorTest extends TestCase {
+    public TopDocumentCollectorTest(String testName) {
+        super(testName);
+    }
+
+    public void testMatchesPriorityQueue() {
+        Random random = new Random(9);
+        TopDocumentCollector collector = new TopDocumentCollector(0);
+
+        for (int trial = 0; trial < 50; trial++) {
+            int requested = random.nextInt(20);
+            collector.reset(requested);
+            PriorityQueue<ScoredDocument> queue = new PriorityQueue<ScoredDocument>();
+
+            for (int i = 0; i < 500; i++) {
+                int document = random.nextInt(1000);
+                // few distinct scores, so there are plenty of ties
+                double score = random.nextInt(30);
+                collector.add(document, score);
+
+                queue.add(new ScoredDocument(document, score));
+                if (queue.size() > requested) {
+                    queue.poll();
+                }
+            }
+
+            assertEquals(queue.size(), collector.size());
+            if (requested > 0) {
+                assertEquals(queue.peek().score, collector.getThreshold());
+            }
+
+            ScoredDocument[] results = collector.getResults();
+            assertEquals(0, collector.size());
+            for (int i = results.length - 1; i >= 0; i--) {
+                ScoredDocument expected = queue.poll();
+                assertEquals(expected.document, results[i].document);
+                assertEquals(expected.score, results[i].score);
+            }
+        }
+    }
+
+    public void testThreshold() {
+        TopDocumentCollector collector = new TopDocumentCollector(2);
+        assertEquals(Double.NEGATIVE_INFINITY, collector.getThreshold());
+
+        assertTrue(collector.add(1, 5.0));
+        assertFalse(collector.isFull());
+        assertTrue(collector.add(2, 3.0));
+        assertTrue(collector.isFull());
+        assertEquals(3.0, collector.getThreshold());
+
+        // a tie with a later document doesn't get in
+        assertFalse(collector.add(3, 3.0));
+        assertTrue(collector.add(4, 4.0));
+        assertEquals(4.0, collector.getThreshold());
+
+        ScoredDocument[] results = collector.getResults();
+        assertEquals(2, results.length);
+        assertEquals(1, results[0].document);
+        assertEquals(4, results[1].document);
+    }
+
+    public void testPooledCollectorIsReset() {
+        TopDocumentCollector collector = TopDocumentCollector.getCollector(3);
+        collector.add(1, 1.0);
+        assertSame(collector, TopDocumentCollector.getCollector(5));
+        assertEquals(0, collector.size());
+        assertEquals(0, TopDocumentCollector.getCollector(0).getResults().length);
+    }
+}
@@ -0,0 +1,44 @@
+// BSD License (http://www.galagosearch.org/license)
+
+package org.galagosearch.core.retrieval.traversal;
+
+import junit.framework.TestCase;
+import org.galagosearch.core.retrieval.query.Node;
+import org.galagosearch.core.retrieval.query.StructuredQuery;
+import org.galagosearch.tupleflow.Parameters;
+
+/**
+ *
+ * @author trevor
+ */
+public class SequentialDependenceTraversalTest extends TestCase {
+    public SequentialDependenceTraversalTest(String testName) {
+        super(testName);
+    }
+
+    public void testPlainQuery() throws Exception {
+        Node root = StructuredQuery.parse("a b c");
+        SequentialDependenceTraversal traversal = new SequentialDependenceTraversal(new Parameters(), null);
+        Node result = StructuredQuery.copy(traversal, root);
+        assertEquals("#sdm( #text:a() #text:b() #text:c() )", result.toString());
+    }
+
+    public void testParameters() throws Exception {
+        Parameters p = new Parameters();
+        p.add("unorderedWidth", "12");
+        p.add("unrelated", "1");
+        SequentialDependenceTraversal traversal = new SequentialDependenceTraversal(p, null);
+        Node result = StructuredQuery.copy(traversal, StructuredQuery.parse("a b"));
+        assertEquals("#sdm:unorderedWidth=12( #text:a() #text:b() )", result.toString());
+    }
+
+    public void testOtherQueries() throws Exception {
+        SequentialDependenceTraversal traversal = new SequentialDependenceTraversal(new Parameters(), null);
+        String[] queries = { "a", "#combine(a)", "#combine(a #od:1(b c))", "a b.title" };
+
+        for (String query : queries) {
+            Node root = StructuredQuery.parse(query);
+            assertEquals(root, StructuredQuery.copy(traversal, root));
+        }
+    }
+}
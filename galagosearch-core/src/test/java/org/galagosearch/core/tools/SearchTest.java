@@ -0,0 +1,69 @@
+// BSD License (http://www.galagosearch.org/license)
+
+package org.galagosearch.core.tools;
+
+import junit.framework.TestCase;
+import org.galagosearch.core.retrieval.Retrieval;
+import org.galagosearch.core.retrieval.ScoredDocument;
+import org.galagosearch.core.retrieval.query.Node;
+import org.galagosearch.core.store.NullStore;
+
+/**
+ *
+ * @author trevor
+ */
+public class SearchTest extends TestCase {
+    public SearchTest(String testName) {
+        super(testName);
+    }
+
+    /**
+     * Counts the queries it transforms.
+     */
+    static class CountingRetrieval extends Retrieval {
+        int transforms;
+
+        public String getDocumentName(int document) {
+            return null;
+        }
+
+        public Node transformQuery(Node query) {
+            transforms++;
+            return new Node("combine", query.getInternalNodes());
+        }
+
+        public ScoredDocument[] runQuery(Node query, int requested) {
+            return new ScoredDocument[0];
+        }
+
+        public void close() {
+        }
+    }
+
+    public void testPlanCache() throws Exception {
+        CountingRetrieval retrieval = new CountingRetrieval();
+        Search search = new Search(retrieval, new NullStore(), 2);
+
+        Search.SearchResult first = search.runQuery("#combine(a b)", 0, 10, false);
+        Search.SearchResult second = search.runQuery("#combine(a b)", 0, 10, false);
+        assertEquals(1, retrieval.transforms);
+        assertSame(first.transformedQuery, second.transformedQuery);
+        assertEquals("#combine( #text:a() #text:b() )", second.transformedQuery.toString());
+
+        // the oldest plan is dropped once there are more than two
+        search.runQuery("#combine(b c)", 0, 10, false);
+        search.runQuery("#combine(c d)", 0, 10, false);
+        assertEquals(3, retrieval.transforms);
+        search.runQuery("#combine(a b)", 0, 10, false);
+        assertEquals(4, retrieval.transforms);
+    }
+
+    public void testNoPlanCache() throws Exception {
+        CountingRetrieval retrieval = new CountingRetrieval();
+        Search search = new Search(retrieval, new NullStore(), 0);
+
+        search.runQuery("#combine(a b)", 0, 10, false);
+        search.runQuery("#combine(a b)", 0, 10, false);
+        assertEquals(2, retrieval.transforms);
+    }
+}
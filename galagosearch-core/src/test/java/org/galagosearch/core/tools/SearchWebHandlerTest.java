@@ -7,7 +7,20 @@ package org.galagosearch.core.tools;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import junit.framework.TestCase;
+import org.galagosearch.core.retrieval.Retrieval;
+import org.galagosearch.core.retrieval.ScoredDocument;
+import org.galagosearch.core.retrieval.query.Node;
+import org.galagosearch.core.store.NullStore;
 
 /**
  *
@@ -24,4 +37,114 @@ public class SearchWebHandlerTest extends TestCase {
         ByteArrayOutputStream stream = new ByteArrayOutputStream();
         handler.retrieveImage(stream);
     }
+
+    /**
+     * A retrieval that doesn't return any documents until release is called.
+     */
+    static class BlockingRetrieval extends Retrieval {
+        CountDownLatch released = new CountDownLatch(1);
+
+        public void release() {
+            released.countDown();
+        }
+
+        public String getDocumentName(int document) {
+            return null;
+        }
+
+        public Node transformQuery(Node query) {
+            return query;
+        }
+
+        public ScoredDocument[] runQuery(Node query, int requested) throws Exception {
+            released.await();
+            return new ScoredDocument[0];
+        }
+
+        public void close() {
+        }
+    }
+
+    static HttpServletRequest makeRequest(final String path) {
+        return (HttpServletRequest) Proxy.newProxyInstance(
+                HttpServletRequest.class.getClassLoader(),
+                new Class[] { HttpServletRequest.class },
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if (method.getName().equals("getPathInfo")) {
+                            return path;
+                        } else if (method.getName().equals("getParameter") && args[0].equals("q")) {
+                            return "query";
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    /**
+     * Records the status and output of a response.
+     */
+    static class FakeResponse implements InvocationHandler {
+        int status = HttpServletResponse.SC_OK;
+        String retryAfter;
+        StringWriter output = new StringWriter();
+
+        HttpServletResponse getResponse() {
+            return (HttpServletResponse) Proxy.newProxyInstance(
+                    HttpServletResponse.class.getClassLoader(),
+                    new Class[] { HttpServletResponse.class }, this);
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("sendError")) {
+                status = (Integer) args[0];
+            } else if (method.getName().equals("setHeader") && args[0].equals("Retry-After")) {
+                retryAfter = (String) args[1];
+            } else if (method.getName().equals("getWriter")) {
+                return new PrintWriter(output);
+            }
+            return null;
+        }
+    }
+
+    public void testFullQueueSheds() throws Exception {
+        BlockingRetrieval retrieval = new BlockingRetrieval();
+        final SearchWebHandler handler = new SearchWebHandler(new Search(retrieval, new NullStore()),
+                                                              SearchWebHandler.createExecutor(1, 1));
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) handler.executor;
+        final FakeResponse[] responses = { new FakeResponse(), new FakeResponse() };
+        Thread[] clients = new Thread[responses.length];
+
+        // one search runs and one waits in the queue
+        for (int i = 0; i < clients.length; i++) {
+            final FakeResponse response = responses[i];
+            clients[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        handler.handle("/searchxml", makeRequest("/searchxml"), response.getResponse(), 0);
+                    } catch (Exception e) {
+                        response.status = -1;
+                    }
+                }
+            };
+            clients[i].start();
+        }
+        while (executor.getActiveCount() + executor.getQueue().size() < 2) {
+            Thread.sleep(5);
+        }
+
+        FakeResponse shed = new FakeResponse();
+        handler.handle("/searchxml", makeRequest("/searchxml"), shed.getResponse(), 0);
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, shed.status);
+        assertEquals("1", shed.retryAfter);
+
+        retrieval.release();
+        for (int i = 0; i < clients.length; i++) {
+            clients[i].join();
+            assertEquals(HttpServletResponse.SC_OK, responses[i].status);
+            assertTrue(responses[i].output.toString().contains("<response>"));
+        }
+        executor.shutdown();
+    }
 }
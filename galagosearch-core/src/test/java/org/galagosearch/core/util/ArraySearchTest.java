@@ -0,0 +1,49 @@
+// BSD License (http://www.galagosearch.org/license)
+
+package org.galagosearch.core.util;
+
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author trevor
+ */
+public class ArraySearchTest extends TestCase {
+    public ArraySearchTest(String testName) {
+        super(testName);
+    }
+
+    public void testGallop() {
+        int[] array = { 1, 3, 3, 7, 10, 15, 22, 40 };
+
+        assertEquals(0, ArraySearch.gallop(array, 0, array.length, 0));
+        assertEquals(1, ArraySearch.gallop(array, 0, array.length, 3));
+        assertEquals(3, ArraySearch.gallop(array, 2, array.length, 4));
+        assertEquals(7, ArraySearch.gallop(array, 0, array.length, 40));
+        assertEquals(8, ArraySearch.gallop(array, 0, array.length, 41));
+        assertEquals(5, ArraySearch.gallop(array, 0, 5, 41));
+        assertEquals(6, ArraySearch.gallop(array, 6, array.length, 1));
+        assertEquals(4, ArraySearch.gallop(array, 4, 4, 100));
+    }
+
+    public void testMatchesLinearSearch() {
+        Random random = new Random(2);
+        int[] array = new int[1000];
+        for (int i = 1; i < array.length; i++) {
+            array[i] = array[i - 1] + random.nextInt(4);
+        }
+
+        for (int trial = 0; trial < 2000; trial++) {
+            int from = random.nextInt(array.length);
+            int to = from + random.nextInt(array.length - from + 1);
+            int key = random.nextInt(array[array.length - 1] + 10);
+
+            int expected = from;
+            while (expected < to && array[expected] < key) {
+                expected++;
+            }
+            assertEquals(expected, ArraySearch.gallop(array, from, to, key));
+        }
+    }
+}
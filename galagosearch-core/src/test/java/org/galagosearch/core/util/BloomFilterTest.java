@@ -0,0 +1,51 @@
+// BSD License (http://www.galagosearch.org/license)
+
+package org.galagosearch.core.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import junit.framework.TestCase;
+import org.galagosearch.tupleflow.Utility;
+
+/**
+ *
+ * @author trevor
+ */
+public class BloomFilterTest extends TestCase {
+    public BloomFilterTest(String testName) {
+        super(testName);
+    }
+
+    public void testContains() throws IOException {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.add(Utility.makeBytes("key" + i));
+        }
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        filter.write(new DataOutputStream(stream));
+        assertEquals(filter.getLength(), stream.size());
+        BloomFilter copy = BloomFilter.read(stream.toByteArray());
+
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(copy.mightContain(Utility.makeBytes("key" + i)));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (copy.mightContain(Utility.makeBytes("other" + i))) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 200);
+    }
+
+    public void testCorrupt() {
+        try {
+            BloomFilter.read(new byte[] { 0, 0, 0, 1, 0, 0, 0, 2, 0 });
+            fail("Expected an exception");
+        } catch (IOException e) {
+        }
+    }
+}
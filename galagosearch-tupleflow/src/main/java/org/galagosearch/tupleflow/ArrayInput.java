@@ -23,6 +23,11 @@ public class ArrayInput {
         int count = readInt();
         int[] result = new int[count];
 
+        if (input instanceof VByteInput) {
+            ((VByteInput) input).readInts(result, 0, count);
+            return result;
+        }
+
         for (int i = 0; i < count; i++) {
             result[i] = readInt();
         }
@@ -4,13 +4,18 @@ package org.galagosearch.tupleflow;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
+ * Reads a region of a file through a small buffer.  All reads are positional
+ * reads on a FileChannel, so the file pointer is never moved, and many streams
+ * can read from the same file at once, even from different threads.
  *
  * @author trevor
  */
 public class BufferedFileDataStream implements DataStream {
-    RandomAccessFile stream;
+    FileChannel channel;
     long stopPosition;
     long startPosition;
     final static int cacheLength = 32768;
@@ -24,9 +29,13 @@ public class BufferedFileDataStream implements DataStream {
     }
 
     public BufferedFileDataStream(RandomAccessFile stream, long start, long end) {
+        this(stream.getChannel(), start, end);
+    }
+
+    public BufferedFileDataStream(FileChannel channel, long start, long end) {
         assert start <= end;
 
-        this.stream = stream;
+        this.channel = channel;
         this.stopPosition = end;
         this.cacheBuffer = new byte[0];
         this.bufferPosition = 0;
@@ -38,7 +47,7 @@ public class BufferedFileDataStream implements DataStream {
         assert start < length();
         assert start + length <= length();
         return new BufferedFileDataStream(
-                stream, bufferStart + start,
+                channel, bufferStart + start,
                 bufferStart + start + length);
     }
 
@@ -203,6 +212,24 @@ public class BufferedFileDataStream implements DataStream {
         }
     }
     
+    public void readVByteInts(int[] output, int offset, int count) throws IOException {
+        while (count > 0) {
+            // a compressed int takes at most 5 bytes, so this many are surely buffered
+            int buffered = Math.min(count, (cacheBuffer.length - bufferPosition) / 5);
+
+            if (buffered > 0) {
+                bufferPosition = VByteInput.decodeInts(cacheBuffer, bufferPosition,
+                                                       output, offset, buffered);
+                offset += buffered;
+                count -= buffered;
+            } else {
+                // near the end of the buffer, go one byte at a time to refill it
+                output[offset++] = VByteInput.decodeInt(this);
+                count--;
+            }
+        }
+    }
+
     private void cache(int length) throws IOException {
         assert length >= 0 : "Length can't be negative: " + length + " " +
                 bufferStart + bufferPosition + " " + stopPosition;
@@ -222,8 +249,13 @@ public class BufferedFileDataStream implements DataStream {
         if (readLength != cacheBuffer.length) {
             cacheBuffer = new byte[readLength];
         }
-        stream.seek(current);
-        stream.readFully(cacheBuffer);
+        ByteBuffer buffer = ByteBuffer.wrap(cacheBuffer);
+        while (buffer.hasRemaining()) {
+            int bytesRead = channel.read(buffer, current + buffer.position());
+            if (bytesRead < 0) {
+                throw new EOFException("Tried to read off the end of the file.");
+            }
+        }
         bufferStart = current;
         bufferPosition = 0;
     }
@@ -0,0 +1,156 @@
+// BSD License (http://www.galagosearch.org/license)
+package org.galagosearch.tupleflow;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A DataStream over a ByteBuffer, usually a slice of a memory-mapped file.
+ * Nothing is copied: reads come straight out of the buffer.  Each stream has
+ * its own view of the buffer, so many streams can share one mapping.
+ *
+ * @author trevor
+ */
+public class ByteBufferDataStream implements DataStream {
+    ByteBuffer buffer;
+
+    /**
+     * Creates a stream over the bytes between the position and the limit
+     * of buffer.  The buffer itself is not modified.
+     */
+    public ByteBufferDataStream(ByteBuffer buffer) {
+        this.buffer = buffer.slice();
+    }
+
+    public ByteBufferDataStream subStream(long start, long length) {
+        assert start <= length();
+        assert start + length <= length();
+
+        ByteBuffer view = buffer.duplicate();
+        view.clear();
+        view.position((int) start);
+        view.limit((int) (start + length));
+        return new ByteBufferDataStream(view);
+    }
+
+    public long getPosition() {
+        return buffer.position();
+    }
+
+    public boolean isDone() {
+        return !buffer.hasRemaining();
+    }
+
+    public long length() {
+        return buffer.limit();
+    }
+
+    public void seek(long offset) {
+        buffer.position((int) Math.min(offset, buffer.limit()));
+    }
+
+    private void require(int length) throws EOFException {
+        if (buffer.remaining() < length) {
+            throw new EOFException("Tried to read off the end of the buffer.");
+        }
+    }
+
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        require(len);
+        buffer.get(b, off, len);
+    }
+
+    public int skipBytes(int n) throws IOException {
+        int skipped = Math.min(n, buffer.remaining());
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    public void readVByteInts(int[] output, int offset, int count) throws IOException {
+        int position = buffer.position();
+        int limit = buffer.limit();
+
+        for (int i = 0; i < count; i++) {
+            int result = 0;
+            int b;
+
+            for (int shift = 0; true; shift += 7) {
+                if (position >= limit) {
+                    buffer.position(position);
+                    throw new EOFException("Tried to read off the end of the buffer.");
+                }
+                b = buffer.get(position++);
+                result |= (b & 0x7f) << shift;
+
+                if (b < 0) {
+                    break;
+                }
+            }
+
+            output[offset + i] = result;
+        }
+
+        buffer.position(position);
+    }
+
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    public byte readByte() throws IOException {
+        require(1);
+        return buffer.get();
+    }
+
+    public int readUnsignedByte() throws IOException {
+        require(1);
+        return buffer.get() & 0xff;
+    }
+
+    public short readShort() throws IOException {
+        require(2);
+        return buffer.getShort();
+    }
+
+    public int readUnsignedShort() throws IOException {
+        return readShort() & 0xffff;
+    }
+
+    public char readChar() throws IOException {
+        require(2);
+        return buffer.getChar();
+    }
+
+    public int readInt() throws IOException {
+        require(4);
+        return buffer.getInt();
+    }
+
+    public long readLong() throws IOException {
+        require(8);
+        return buffer.getLong();
+    }
+
+    public float readFloat() throws IOException {
+        require(4);
+        return buffer.getFloat();
+    }
+
+    public double readDouble() throws IOException {
+        require(8);
+        return buffer.getDouble();
+    }
+
+    public String readLine() throws IOException {
+        throw new IOException("readLine is unimplemented and deprecated");
+    }
+
+    public String readUTF() throws IOException {
+        throw new IOException("readUTF is unimplemented");
+    }
+}
@@ -6,6 +6,7 @@
 package org.galagosearch.tupleflow;
 
 import java.io.DataInput;
+import java.io.IOException;
 
 /**
  *
@@ -23,4 +24,10 @@ public interface DataStream extends DataInput {
      * this data stream, not the beginning of the file.
      */
     void seek(long offset);
+
+    /**
+     * Reads count integers compressed with VByteOutput into output, starting
+     * at offset.  Implementations decode directly from their own buffers.
+     */
+    void readVByteInts(int[] output, int offset, int count) throws IOException;
 }
@@ -70,6 +70,25 @@ public class MemoryDataStream implements DataStream {
         }
     }
 
+    public void readVByteInts(int[] output, int offset, int count) throws IOException {
+        while (count > 0) {
+            int position = (int) getPosition();
+            // a compressed int takes at most 5 bytes, so this many are surely in range
+            int available = Math.min(count, (length - position) / 5);
+
+            if (available > 0) {
+                int start = this.offset + position;
+                int end = VByteInput.decodeInts(data, start, output, offset, available);
+                input.skipBytes(end - start);
+                offset += available;
+                count -= available;
+            } else {
+                output[offset++] = VByteInput.decodeInt(input);
+                count--;
+            }
+        }
+    }
+
     public void readFully(byte[] b) throws IOException {
         input.readFully(b);
     }
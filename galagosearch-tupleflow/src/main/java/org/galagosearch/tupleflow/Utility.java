@@ -159,6 +159,14 @@ public class Utility {
         }
     }
 
+    public static String makeString(byte[] word, int offset, int length) {
+        try {
+            return new String(word, offset, length, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("UTF-8 is not supported by your Java Virtual Machine.");
+        }
+    }
+
     public static byte[] makeBytes(String word) {
         try {
             return word.getBytes("UTF-8");
@@ -308,6 +316,30 @@ public class Utility {
         return one.length - two.length;
     }
 
+    /**
+     * Compares two byte ranges in the same order as compare(byte[], byte[]),
+     * without copying either range into its own array.
+     */
+    public static int compare(byte[] one, int oneStart, int oneLength,
+                              byte[] two, int twoStart, int twoLength) {
+        int sharedLength = Math.min(oneLength, twoLength);
+
+        for (int i = 0; i < sharedLength; i++) {
+            int a = ((int) one[oneStart + i]) & 0xFF;
+            int b = ((int) two[twoStart + i]) & 0xFF;
+            int result = a - b;
+
+            if (result < 0) {
+                return -1;
+            }
+            if (result > 0) {
+                return 1;
+            }
+        }
+
+        return oneLength - twoLength;
+    }
+
     public static int hash(byte b) {
         return ((int) b) & 0xFF;
     }
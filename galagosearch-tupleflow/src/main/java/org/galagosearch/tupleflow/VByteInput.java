@@ -5,14 +5,23 @@ import java.io.DataInput;
 import java.io.IOException;
 
 /**
+ * Reads integers compressed with VByteOutput.  When the underlying input is a
+ * DataStream, integers are decoded by the stream itself, straight out of its
+ * buffer, instead of one readUnsignedByte call at a time.
  *
  * @author trevor
  */
 public class VByteInput implements DataInput {
     DataInput input;
+    DataStream stream;
+    int[] single = new int[1];
 
     public VByteInput(DataInput input) {
         this.input = input;
+
+        if (input instanceof DataStream) {
+            this.stream = (DataStream) input;
+        }
     }
 
     public void readFully(byte[] b, int i, int i0) throws IOException {
@@ -65,6 +74,30 @@ public class VByteInput implements DataInput {
     }
 
     public int readInt() throws IOException {
+        if (stream != null) {
+            stream.readVByteInts(single, 0, 1);
+            return single[0];
+        }
+        return decodeInt(input);
+    }
+
+    /**
+     * Reads count compressed integers into output, starting at offset.
+     */
+    public void readInts(int[] output, int offset, int count) throws IOException {
+        if (stream != null) {
+            stream.readVByteInts(output, offset, count);
+        } else {
+            for (int i = 0; i < count; i++) {
+                output[offset + i] = decodeInt(input);
+            }
+        }
+    }
+
+    /**
+     * Reads one compressed integer from input a byte at a time.
+     */
+    public static int decodeInt(DataInput input) throws IOException {
         int result = 0;
         int b;
 
@@ -83,6 +116,40 @@ public class VByteInput implements DataInput {
         return result;
     }
 
+    /**
+     * Decodes count compressed integers from data, starting at position,
+     * into output, starting at offset.  The caller must make sure that all
+     * of the integers end inside data; a safe bound is 5 bytes per integer.
+     * Returns the position just after the last byte read.
+     */
+    public static int decodeInts(byte[] data, int position, int[] output, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            int b = data[position++];
+            int result = b & 0x7f;
+
+            for (int shift = 7; b >= 0; shift += 7) {
+                b = data[position++];
+                result |= (b & 0x7f) << shift;
+            }
+
+            output[offset + i] = result;
+        }
+
+        return position;
+    }
+
+    /**
+     * Skips over the next count compressed integers without decoding them.
+     * Only the stop bit of each byte needs to be examined.
+     */
+    public void skipInts(int count) throws IOException {
+        while (count > 0) {
+            if ((input.readUnsignedByte() & 0x80) == 0x80) {
+                count--;
+            }
+        }
+    }
+
     public long readLong() throws IOException {
         long result = 0;
         long b;
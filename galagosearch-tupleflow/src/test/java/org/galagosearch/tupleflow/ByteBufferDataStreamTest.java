@@ -0,0 +1,61 @@
+// BSD License (http://www.galagosearch.org/license)
+
+package org.galagosearch.tupleflow;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import junit.framework.TestCase;
+
+/**
+ *
+ * @author trevor
+ */
+public class ByteBufferDataStreamTest extends TestCase {
+    public ByteBufferDataStreamTest(String testName) {
+        super(testName);
+    }
+
+    public void testRead() throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(stream);
+        output.writeByte(7);
+        output.writeInt(12345678);
+        output.writeLong(-5L);
+        output.writeShort(-2);
+        output.writeByte(200);
+        output.close();
+
+        byte[] data = stream.toByteArray();
+        ByteBuffer buffer = ByteBuffer.allocate(data.length + 4);
+        buffer.position(2);
+        buffer.put(data);
+        buffer.position(2);
+        buffer.limit(2 + data.length);
+
+        ByteBufferDataStream input = new ByteBufferDataStream(buffer);
+        assertEquals(data.length, input.length());
+        assertEquals(7, input.readByte());
+        assertEquals(12345678, input.readInt());
+        assertEquals(-5L, input.readLong());
+        assertEquals(-2, input.readShort());
+        assertEquals(200, input.readUnsignedByte());
+        assertTrue(input.isDone());
+
+        try {
+            input.readByte();
+            fail("Expected an EOFException");
+        } catch (EOFException e) {
+        }
+
+        DataStream sub = input.subStream(1, 4);
+        assertEquals(0, sub.getPosition());
+        assertEquals(12345678, sub.readInt());
+        assertTrue(sub.isDone());
+
+        input.seek(5);
+        assertEquals(-5L, input.readLong());
+    }
+}
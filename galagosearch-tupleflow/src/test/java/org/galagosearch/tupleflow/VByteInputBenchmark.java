@@ -0,0 +1,128 @@
+// BSD License (http://www.galagosearch.org/license)
+package org.galagosearch.tupleflow;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+/**
+ * Measures vbyte decoding throughput for each kind of DataStream.  "byte at
+ * a time" is the old decoder, which calls readUnsignedByte for every byte;
+ * "readInt" and "readInts" go through the stream's bulk decoder one value
+ * at a time and a block at a time.  This isn't run with the tests; run it
+ * by hand with:
+ *
+ *   java -cp target/classes:target/test-classes org.galagosearch.tupleflow.VByteInputBenchmark
+ *
+ * @author trevor
+ */
+public class VByteInputBenchmark {
+    static final int COUNT = 10 * 1000 * 1000;
+    static final int TRIALS = 5;
+    static final int BYTE_AT_A_TIME = 0;
+    static final int READ_INT = 1;
+    static final int READ_INTS = 2;
+    static final String[] modeNames = { "byte at a time", "readInt", "readInts" };
+
+    static int[] makeValues(int count) {
+        Random random = new Random(3);
+        int[] values = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            // mostly small values, with some of every encoded length
+            values[i] = random.nextInt() >>> (1 + random.nextInt(31));
+        }
+        return values;
+    }
+
+    static byte[] encode(int[] values) throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        VByteOutput output = new VByteOutput(new DataOutputStream(stream));
+        for (int value : values) {
+            output.writeInt(value);
+        }
+        stream.close();
+        return stream.toByteArray();
+    }
+
+    interface Source {
+        DataStream open() throws IOException;
+    }
+
+    static long run(String name, Source source, int mode) throws IOException {
+        int[] output = new int[4096];
+        long best = Long.MAX_VALUE;
+        long checksum = 0;
+
+        for (int trial = 0; trial < TRIALS; trial++) {
+            DataStream stream = source.open();
+            VByteInput input = new VByteInput(stream);
+            long start = System.nanoTime();
+
+            for (int i = 0; i < COUNT; i += output.length) {
+                int count = Math.min(output.length, COUNT - i);
+
+                if (mode == READ_INTS) {
+                    input.readInts(output, 0, count);
+                } else if (mode == READ_INT) {
+                    for (int j = 0; j < count; j++) {
+                        output[j] = input.readInt();
+                    }
+                } else {
+                    for (int j = 0; j < count; j++) {
+                        output[j] = VByteInput.decodeInt((DataInput) stream);
+                    }
+                }
+                checksum += output[count - 1];
+            }
+
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        double millions = COUNT / (best / 1000.0);
+        System.out.printf("%-24s %-16s %8.1f million ints/s\n", name, modeNames[mode], millions);
+        return checksum;
+    }
+
+    public static void main(String[] args) throws IOException {
+        final byte[] data = encode(makeValues(COUNT));
+        File temporary = File.createTempFile("vbyte-benchmark", null);
+        temporary.deleteOnExit();
+        FileOutputStream stream = new FileOutputStream(temporary);
+        stream.write(data);
+        stream.close();
+        final RandomAccessFile file = new RandomAccessFile(temporary, "r");
+
+        System.out.println(COUNT + " ints in " + data.length + " bytes");
+
+        Source memory = new Source() {
+            public DataStream open() {
+                return new MemoryDataStream(data, 0, data.length);
+            }
+        };
+        Source buffered = new Source() {
+            public DataStream open() {
+                return new BufferedFileDataStream(file, 0, data.length);
+            }
+        };
+        Source mapped = new Source() {
+            public DataStream open() throws IOException {
+                return new ByteBufferDataStream(
+                        file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, data.length));
+            }
+        };
+
+        for (int mode = BYTE_AT_A_TIME; mode <= READ_INTS; mode++) {
+            run("MemoryDataStream", memory, mode);
+            run("BufferedFileDataStream", buffered, mode);
+            run("ByteBufferDataStream", mapped, mode);
+        }
+        file.close();
+    }
+}
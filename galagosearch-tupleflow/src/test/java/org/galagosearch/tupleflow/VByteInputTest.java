@@ -9,7 +9,12 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Random;
 import junit.framework.TestCase;
 
 /**
@@ -35,4 +40,76 @@ public class VByteInputTest extends TestCase {
         assertEquals("\u2297", result); 
     }
 
+    public void testSkipInts() throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        VByteOutput output = new VByteOutput(new DataOutputStream(stream));
+        output.writeInt(5);
+        output.writeInt(300);
+        output.writeInt(70000);
+        output.writeInt(Integer.MAX_VALUE);
+        output.writeInt(42);
+        stream.close();
+
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(stream.toByteArray());
+        VByteInput input = new VByteInput(new DataInputStream(inputStream));
+        input.skipInts(4);
+
+        assertEquals(42, input.readInt());
+    }
+
+    private void checkReadInts(int[] values, VByteInput input) throws IOException {
+        int[] result = new int[values.length + 1];
+        int position = 0;
+        Random random = new Random(4);
+
+        // mix bulk reads of various sizes with single reads
+        while (position < values.length) {
+            int count = Math.min(values.length - position, random.nextInt(300));
+            input.readInts(result, position, count);
+            position += count;
+
+            if (position < values.length) {
+                result[position++] = input.readInt();
+            }
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], result[i]);
+        }
+    }
+
+    public void testReadIntsFromStreams() throws IOException {
+        int[] values = VByteInputBenchmark.makeValues(50000);
+        byte[] data = VByteInputBenchmark.encode(values);
+
+        checkReadInts(values, new VByteInput(new DataInputStream(new ByteArrayInputStream(data))));
+        checkReadInts(values, new VByteInput(new MemoryDataStream(data, 0, data.length)));
+        checkReadInts(values, new VByteInput(new ByteBufferDataStream(ByteBuffer.wrap(data))));
+
+        // this is larger than the stream buffer, so some values cross buffer boundaries
+        File temporary = File.createTempFile("vbyte", null);
+        try {
+            FileOutputStream output = new FileOutputStream(temporary);
+            output.write(data);
+            output.close();
+
+            RandomAccessFile file = new RandomAccessFile(temporary, "r");
+            checkReadInts(values, new VByteInput(new BufferedFileDataStream(file, 0, data.length)));
+            file.close();
+        } finally {
+            temporary.delete();
+        }
+    }
+
+    public void testReadIntsPastEnd() throws IOException {
+        byte[] data = VByteInputBenchmark.encode(new int[] { 1, 2, 3 });
+        VByteInput input = new VByteInput(new MemoryDataStream(data, 0, data.length));
+        int[] result = new int[4];
+
+        try {
+            input.readInts(result, 0, 4);
+            fail("Expected an EOFException");
+        } catch (java.io.EOFException e) {
+        }
+    }
 }